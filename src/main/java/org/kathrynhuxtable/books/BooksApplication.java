@@ -23,7 +23,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.kathrynhuxtable.books.service.BooksService;
 import org.kathrynhuxtable.books.ui.control.MainBooksPane;
 import org.kathrynhuxtable.books.ui.controller.MainController;
 import org.springframework.boot.SpringApplication;
@@ -31,6 +35,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.MessageSource;
 import org.springframework.context.support.MessageSourceResourceBundle;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import de.codecentric.centerdevice.MenuToolkit;
 import javafx.application.Application;
@@ -51,6 +56,7 @@ import javafx.stage.WindowEvent;
  * Main entry point for the Spring Boot application.
  */
 @SpringBootApplication
+@EnableScheduling
 public class BooksApplication extends Application {
 
 	private static final String OS_NAME = System.getProperty("books.os.name", System.getProperty("os.name"));
@@ -83,6 +89,9 @@ public class BooksApplication extends Application {
 	public void init() throws Exception {
 		springContext = SpringApplication.run(BooksApplication.class);
 
+		// Warm up search while the rest of the application loads.
+		CompletableFuture<Void> warmUp = CompletableFuture.runAsync(springContext.getBean(BooksService.class)::warmUp);
+
 		// Create initial files in app directory.
 		initializeFiles();
 
@@ -90,6 +99,13 @@ public class BooksApplication extends Application {
 		fxmlLoader.setControllerFactory(springContext::getBean);
 		fxmlLoader.setResources(new MessageSourceResourceBundle(springContext.getBean(MessageSource.class), Locale.getDefault()));
 		root = fxmlLoader.load();
+
+		// Keep the splash screen up until the warm-up is done. If it takes too long, it carries on in the background.
+		try {
+			warmUp.get(springContext.getBean(YAMLConfig.class).getSearchWarmUpTimeoutMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// Carry on.
+		}
 	}
 
 	/**
@@ -190,7 +206,8 @@ public class BooksApplication extends Application {
 	}
 
 	private void exitApplication() {
-		springContext.stop();
+		// Closing the context shuts down Hibernate Search, which applies any index changes still queued.
+		springContext.close();
 		System.exit(0);
 	}
 }
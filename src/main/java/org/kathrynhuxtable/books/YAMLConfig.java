@@ -45,6 +45,81 @@ public class YAMLConfig {
 	@Value("${mcdb.alert-file}")
 	private String alertFile;
 
+	@Value("${mcdb.search.parallel:true}")
+	private boolean searchParallel;
+
+	@Value("${mcdb.search.threads:4}")
+	private int searchThreads;
+
+	@Value("${mcdb.search.timeout-millis:2000}")
+	private long searchTimeoutMillis;
+
+	@Value("${mcdb.search.projections:true}")
+	private boolean searchProjections;
+
+	@Value("${mcdb.search.suggestions:10}")
+	private int searchSuggestions;
+
+	@Value("${mcdb.search.warm-up:true}")
+	private boolean searchWarmUp;
+
+	@Value("${mcdb.search.warm-up-timeout-millis:10000}")
+	private long searchWarmUpTimeoutMillis;
+
+	@Value("${mcdb.search.page-size:25}")
+	private int searchPageSize;
+
+	@Value("${mcdb.search.unified:false}")
+	private boolean searchUnified;
+
+	@Value("${mcdb.search.cache-size:64}")
+	private int searchCacheSize;
+
+	@Value("${mcdb.search.ngram:false}")
+	private boolean searchNgram;
+
+	@Value("${mcdb.search.browse-page-size:50}")
+	private int searchBrowsePageSize;
+
+	@Value("${mcdb.indexer.types-in-parallel:0}")
+	private int indexerTypesInParallel;
+
+	@Value("${mcdb.indexer.threads-to-load-objects:0}")
+	private int indexerThreadsToLoadObjects;
+
+	@Value("${mcdb.indexer.batch-size:25}")
+	private int indexerBatchSize;
+
+	@Value("${mcdb.indexer.id-fetch-size:150}")
+	private int indexerIdFetchSize;
+
+	@Value("${mcdb.indexer.timestamp-file:${mcdb.data-directory}/index-updated}")
+	private String indexerTimestampFile;
+
+	@Value("${mcdb.indexer.import-batch-size:100}")
+	private int indexerImportBatchSize;
+
+	@Value("${spring.jpa.properties.hibernate.search.default.worker.execution:sync}")
+	private String indexerWorkerExecution;
+
+	@Value("${mcdb.indexer.benchmark:false}")
+	private boolean indexerBenchmark;
+
+	@Value("${mcdb.indexer.maintenance.enabled:true}")
+	private boolean maintenanceEnabled;
+
+	@Value("${mcdb.indexer.maintenance.idle-minutes:10}")
+	private long maintenanceIdleMinutes;
+
+	@Value("${mcdb.indexer.maintenance.deleted-ratio:0.1}")
+	private double maintenanceDeletedRatio;
+
+	@Value("${mcdb.indexer.maintenance.max-segments:10}")
+	private int maintenanceMaxSegments;
+
+	@Value("${mcdb.indexer.maintenance.pause-millis:5000}")
+	private long maintenancePauseMillis;
+
 	public String getAppName() {
 		return appName;
 	}
@@ -100,4 +175,204 @@ public class YAMLConfig {
 	public void setAlertFile(String alertFile) {
 		this.alertFile = alertFile;
 	}
+
+	public boolean isSearchParallel() {
+		return searchParallel;
+	}
+
+	public void setSearchParallel(boolean searchParallel) {
+		this.searchParallel = searchParallel;
+	}
+
+	public int getSearchThreads() {
+		return searchThreads;
+	}
+
+	public void setSearchThreads(int searchThreads) {
+		this.searchThreads = searchThreads;
+	}
+
+	public long getSearchTimeoutMillis() {
+		return searchTimeoutMillis;
+	}
+
+	public void setSearchTimeoutMillis(long searchTimeoutMillis) {
+		this.searchTimeoutMillis = searchTimeoutMillis;
+	}
+
+	public boolean isSearchProjections() {
+		return searchProjections;
+	}
+
+	public void setSearchProjections(boolean searchProjections) {
+		this.searchProjections = searchProjections;
+	}
+
+	public int getSearchPageSize() {
+		return searchPageSize;
+	}
+
+	public void setSearchPageSize(int searchPageSize) {
+		this.searchPageSize = searchPageSize;
+	}
+
+	public boolean isSearchUnified() {
+		return searchUnified;
+	}
+
+	public void setSearchUnified(boolean searchUnified) {
+		this.searchUnified = searchUnified;
+	}
+
+	public int getSearchCacheSize() {
+		return searchCacheSize;
+	}
+
+	public void setSearchCacheSize(int searchCacheSize) {
+		this.searchCacheSize = searchCacheSize;
+	}
+
+	public boolean isSearchNgram() {
+		return searchNgram;
+	}
+
+	public void setSearchNgram(boolean searchNgram) {
+		this.searchNgram = searchNgram;
+	}
+
+	public int getIndexerTypesInParallel() {
+		return indexerTypesInParallel;
+	}
+
+	public void setIndexerTypesInParallel(int indexerTypesInParallel) {
+		this.indexerTypesInParallel = indexerTypesInParallel;
+	}
+
+	public int getIndexerThreadsToLoadObjects() {
+		return indexerThreadsToLoadObjects;
+	}
+
+	public void setIndexerThreadsToLoadObjects(int indexerThreadsToLoadObjects) {
+		this.indexerThreadsToLoadObjects = indexerThreadsToLoadObjects;
+	}
+
+	public int getIndexerBatchSize() {
+		return indexerBatchSize;
+	}
+
+	public void setIndexerBatchSize(int indexerBatchSize) {
+		this.indexerBatchSize = indexerBatchSize;
+	}
+
+	public int getIndexerIdFetchSize() {
+		return indexerIdFetchSize;
+	}
+
+	public void setIndexerIdFetchSize(int indexerIdFetchSize) {
+		this.indexerIdFetchSize = indexerIdFetchSize;
+	}
+
+	public String getIndexerTimestampFile() {
+		return indexerTimestampFile;
+	}
+
+	public void setIndexerTimestampFile(String indexerTimestampFile) {
+		this.indexerTimestampFile = indexerTimestampFile;
+	}
+
+	public int getIndexerImportBatchSize() {
+		return indexerImportBatchSize;
+	}
+
+	public void setIndexerImportBatchSize(int indexerImportBatchSize) {
+		this.indexerImportBatchSize = indexerImportBatchSize;
+	}
+
+	public String getIndexerWorkerExecution() {
+		return indexerWorkerExecution;
+	}
+
+	public void setIndexerWorkerExecution(String indexerWorkerExecution) {
+		this.indexerWorkerExecution = indexerWorkerExecution;
+	}
+
+	public boolean isIndexerBenchmark() {
+		return indexerBenchmark;
+	}
+
+	public void setIndexerBenchmark(boolean indexerBenchmark) {
+		this.indexerBenchmark = indexerBenchmark;
+	}
+
+	public boolean isSearchWarmUp() {
+		return searchWarmUp;
+	}
+
+	public void setSearchWarmUp(boolean searchWarmUp) {
+		this.searchWarmUp = searchWarmUp;
+	}
+
+	public long getSearchWarmUpTimeoutMillis() {
+		return searchWarmUpTimeoutMillis;
+	}
+
+	public void setSearchWarmUpTimeoutMillis(long searchWarmUpTimeoutMillis) {
+		this.searchWarmUpTimeoutMillis = searchWarmUpTimeoutMillis;
+	}
+
+	public int getSearchSuggestions() {
+		return searchSuggestions;
+	}
+
+	public void setSearchSuggestions(int searchSuggestions) {
+		this.searchSuggestions = searchSuggestions;
+	}
+
+	public boolean isMaintenanceEnabled() {
+		return maintenanceEnabled;
+	}
+
+	public void setMaintenanceEnabled(boolean maintenanceEnabled) {
+		this.maintenanceEnabled = maintenanceEnabled;
+	}
+
+	public long getMaintenanceIdleMinutes() {
+		return maintenanceIdleMinutes;
+	}
+
+	public void setMaintenanceIdleMinutes(long maintenanceIdleMinutes) {
+		this.maintenanceIdleMinutes = maintenanceIdleMinutes;
+	}
+
+	public double getMaintenanceDeletedRatio() {
+		return maintenanceDeletedRatio;
+	}
+
+	public void setMaintenanceDeletedRatio(double maintenanceDeletedRatio) {
+		this.maintenanceDeletedRatio = maintenanceDeletedRatio;
+	}
+
+	public int getMaintenanceMaxSegments() {
+		return maintenanceMaxSegments;
+	}
+
+	public void setMaintenanceMaxSegments(int maintenanceMaxSegments) {
+		this.maintenanceMaxSegments = maintenanceMaxSegments;
+	}
+
+	public long getMaintenancePauseMillis() {
+		return maintenancePauseMillis;
+	}
+
+	public void setMaintenancePauseMillis(long maintenancePauseMillis) {
+		this.maintenancePauseMillis = maintenancePauseMillis;
+	}
+
+	public int getSearchBrowsePageSize() {
+		return searchBrowsePageSize;
+	}
+
+	public void setSearchBrowsePageSize(int searchBrowsePageSize) {
+		this.searchBrowsePageSize = searchBrowsePageSize;
+	}
 }
\ No newline at end of file
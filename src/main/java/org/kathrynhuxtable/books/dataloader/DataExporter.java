@@ -31,6 +31,7 @@ import org.kathrynhuxtable.books.persistence.domain.Volume;
 import org.kathrynhuxtable.books.service.DataLoaderResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class DataExporter {
@@ -42,6 +43,8 @@ public class DataExporter {
 	@Autowired
 	private BorrowerDAO borrowerDao;
 
+	// One session for the whole export, which reads every association of every entity.
+	@Transactional(readOnly = true)
 	public List<DataLoaderResult> export(File file) {
 		try {
 			DataFileHandler handler = new DataFileHandler(file, true);
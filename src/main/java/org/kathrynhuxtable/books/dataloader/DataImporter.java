@@ -20,21 +20,32 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.kathrynhuxtable.books.YAMLConfig;
 import org.kathrynhuxtable.books.persistence.dao.AuthorDAO;
 import org.kathrynhuxtable.books.persistence.dao.BorrowerDAO;
 import org.kathrynhuxtable.books.persistence.dao.TitleDAO;
 import org.kathrynhuxtable.books.persistence.dao.VolumeDAO;
 import org.kathrynhuxtable.books.persistence.domain.Author;
 import org.kathrynhuxtable.books.persistence.domain.Borrower;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
 import org.kathrynhuxtable.books.persistence.domain.Title;
 import org.kathrynhuxtable.books.persistence.domain.Volume;
 import org.kathrynhuxtable.books.service.DataLoaderResult;
+import org.kathrynhuxtable.books.service.NameSuggester;
+import org.kathrynhuxtable.books.service.SearchResult;
+import org.kathrynhuxtable.books.service.SearchResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DataImporter {
 
+	private static final Logger LOG = LoggerFactory.getLogger(DataImporter.class);
+
 	@Autowired
 	private AuthorDAO authorDao;
 	@Autowired
@@ -43,6 +54,14 @@ public class DataImporter {
 	private VolumeDAO volumeDao;
 	@Autowired
 	private BorrowerDAO borrowerDao;
+	@Autowired
+	private SearchResultCache searchCache;
+	@Autowired
+	private NameSuggester nameSuggester;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private YAMLConfig config;
 
 	public List<DataLoaderResult> load(File file) {
 		DataFileHandler handler;
@@ -60,44 +79,82 @@ public class DataImporter {
 		List<DataLoaderResult> messages = new ArrayList<>();
 		DataHeaders headers = handler.getHeaders();
 
-		for (DataRecord record : handler.getResults()) {
-			List<Author> authors = null;
-			if (headers.canImportAuthors() && !record.getAuthorName().isEmpty()) {
-				authors = addAuthors(record, messages);
-				if (authors == null) {
-					continue;
+		// Save the records in batches, each in one transaction. The index changes of a transaction are applied together
+		// when it commits, and several changes to the same entity become one. A failure rolls back the whole batch, so
+		// a failed batch is saved again a record at a time, which loses only the records that fail.
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		List<DataRecord> records = handler.getResults();
+		int batchSize = Math.max(1, config.getIndexerImportBatchSize());
+		for (int start = 0; start < records.size(); start += batchSize) {
+			List<DataRecord> batch = records.subList(start, Math.min(start + batchSize, records.size()));
+			try {
+				addRecords(transaction, batch, headers, messages);
+			} catch (RuntimeException batchFailure) {
+				for (int i = 0; i < batch.size(); i++) {
+					try {
+						addRecords(transaction, batch.subList(i, i + 1), headers, messages);
+					} catch (RuntimeException e) {
+						LOG.warn("Record " + (start + i + 1) + " not imported", e);
+						messages.add(DataLoaderResult.Error("Record " + (start + i + 1) + " not imported: " + e.getMessage()));
+					}
 				}
 			}
+		}
 
-			Title entry = null;
-			if (headers.canImportTitles() && !record.getTitle().isEmpty()) {
-				entry = addTitle(record, authors, messages);
-				if (entry == null) {
-					continue;
-				}
+		// The records are saved through the DAOs, so cached search results must be dropped here.
+		searchCache.clear();
+		return messages;
+	}
+
+	/**
+	 * Save records in one transaction. Their messages and suggestions are only kept once it commits, since until then
+	 * the records may be rolled back.
+	 */
+	private void addRecords(TransactionTemplate transaction, List<DataRecord> records, DataHeaders headers,
+			List<DataLoaderResult> messages) {
+		List<DataLoaderResult> added = new ArrayList<>();
+		List<SearchResult> suggestions = new ArrayList<>();
+		transaction.execute(status -> {
+			List<DomainObject> saved = new ArrayList<>();
+			records.forEach(record -> addRecord(record, headers, added, saved));
+			saved.forEach(object -> suggestions.addAll(nameSuggester.suggestionsFor(object)));
+			return null;
+		});
+		messages.addAll(added);
+		suggestions.forEach(nameSuggester::update);
+	}
+
+	private void addRecord(DataRecord record, DataHeaders headers, List<DataLoaderResult> messages, List<DomainObject> saved) {
+		List<Author> authors = null;
+		if (headers.canImportAuthors() && !record.getAuthorName().isEmpty()) {
+			authors = addAuthors(record, messages, saved);
+			if (authors == null) {
+				return;
 			}
+		}
 
-			Volume volume = null;
-			if (entry != null && headers.canImportVolumes()) {
-				volume = addVolume(record, entry, messages);
-				if (volume == null) {
-					continue;
-				}
+		Title entry = null;
+		if (headers.canImportTitles() && !record.getTitle().isEmpty()) {
+			entry = addTitle(record, authors, messages, saved);
+			if (entry == null) {
+				return;
 			}
+		}
 
-			Borrower borrower = null;
-			if (volume != null && headers.canImportBorrowers() && !record.getBorrowerName().isEmpty()) {
-				borrower = addBorrower(record, volume, messages);
-				if (borrower == null) {
-					continue;
-				}
+		Volume volume = null;
+		if (entry != null && headers.canImportVolumes()) {
+			volume = addVolume(record, entry, messages);
+			if (volume == null) {
+				return;
 			}
 		}
 
-		return messages;
+		if (volume != null && headers.canImportBorrowers() && !record.getBorrowerName().isEmpty()) {
+			addBorrower(record, volume, messages, saved);
+		}
 	}
 
-	private List<Author> addAuthors(DataRecord record, List<DataLoaderResult> messages) {
+	private List<Author> addAuthors(DataRecord record, List<DataLoaderResult> messages, List<DomainObject> saved) {
 		List<Author> authors = new ArrayList<>();
 
 		boolean error = false;
@@ -108,6 +165,7 @@ public class DataImporter {
 				// Create new author
 				Author author = saveAuthor(record, dataName);
 				messages.add(DataLoaderResult.Success("Added author " + author.getName()));
+				saved.add(author);
 				authors.add(author);
 			} else if (found.size() > 1) {
 				messages.add(DataLoaderResult.Error("Found multiple Author matches for \"" + name + "\""));
@@ -120,13 +178,14 @@ public class DataImporter {
 		return error ? null : authors;
 	}
 
-	private Title addTitle(DataRecord record, List<Author> authors, List<DataLoaderResult> messages) {
+	private Title addTitle(DataRecord record, List<Author> authors, List<DataLoaderResult> messages, List<DomainObject> saved) {
 		List<Title> titles = findTitle(record, authors);
 		if (titles.isEmpty()) {
 			// Create new title
 			List<Title> contents = findContents(record, messages);
 			Title entry = saveTitle(record, authors, contents);
 			messages.add(DataLoaderResult.Success("Added title " + entry.getTitle()));
+			saved.add(entry);
 			return entry;
 		} else if (titles.size() > 1) {
 			messages.add(DataLoaderResult.Error("Found multiple title matches for \"" + record.getTitle() + "\""));
@@ -143,13 +202,14 @@ public class DataImporter {
 		return volume;
 	}
 
-	private Borrower addBorrower(DataRecord record, Volume volume, List<DataLoaderResult> messages) {
+	private Borrower addBorrower(DataRecord record, Volume volume, List<DataLoaderResult> messages, List<DomainObject> saved) {
 		DataName dataName = new DataName(record.getBorrowerName());
 		List<Borrower> borrowers = findBorrowers(dataName);
 		if (borrowers.isEmpty()) {
 			// Create new borrower
 			Borrower borrower = saveBorrower(record, volume, dataName);
 			messages.add(DataLoaderResult.Success("Added borrower " + borrower.getName()));
+			saved.add(borrower);
 			return borrower;
 		} else if (borrowers.size() > 1) {
 			messages.add(DataLoaderResult.Error("Found multiple Borrower matches for \"" + record.getBorrowerName() + "\""));
@@ -17,15 +17,43 @@ package org.kathrynhuxtable.books.persistence.dao;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.hibernate.Hibernate;
 import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface AuthorDAO extends CrudRepository<Author, Long> {
 
+	/**
+	 * Load an author with the titles its page shows, in one query.
+	 */
+	@Transactional(readOnly = true)
+	default Optional<Author> findPageById(Long id) {
+		Optional<Author> author = findWithTitlesById(id);
+		// Results from the query cache come without their fetches, which are then read from the second-level cache.
+		author.ifPresent(a -> Hibernate.initialize(a.getTitles()));
+		return author;
+	}
+
+	@EntityGraph(attributePaths = "titles")
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Optional<Author> findWithTitlesById(Long id);
+
 	default List<Author> findByName(String name, boolean fetchFields) {
 		String[] nameParts = null;
 		name = name.trim();
@@ -43,19 +71,24 @@ public interface AuthorDAO extends CrudRepository<Author, Long> {
 		}
 	}
 
+	@Transactional(readOnly = true)
 	default List<Author> findByName(String lastName, String firstName, boolean fetchFields) {
-		Sort sort = Sort.by(new Sort.Order(Sort.Direction.ASC, "lastName").ignoreCase(), new Sort.Order(Sort.Direction.ASC, "firstName").ignoreCase());
+		Sort sort = Sort.by("sortLastName", "sortFirstName", "id");
+
+		// Match the prefixes against the indexed sort keys, which are already in lower case.
+		String lastKey = DomainObject.nameSortKey(lastName);
+		String firstKey = DomainObject.nameSortKey(firstName);
 
 		List<Author> result = null;
-		if (firstName != null && !firstName.isEmpty() && lastName != null && !lastName.isEmpty()) {
-			result = findByLastNameStartingWithAndFirstNameStartingWithAllIgnoreCase(lastName, firstName, sort);
-		} else if (lastName != null && !lastName.isEmpty()) {
-			result = findByLastNameStartingWithAllIgnoreCase(lastName, sort);
-		} else if (firstName != null && !firstName.isEmpty()) {
-			result = findByFirstNameStartingWithAllIgnoreCase(firstName, sort);
+		if (!firstKey.isEmpty() && !lastKey.isEmpty()) {
+			result = findBySortLastNameStartingWithAndSortFirstNameStartingWith(lastKey, firstKey, sort);
+		} else if (!lastKey.isEmpty()) {
+			result = findBySortLastNameStartingWith(lastKey, sort);
+		} else if (!firstKey.isEmpty()) {
+			result = findBySortFirstNameStartingWith(firstKey, sort);
 		} else {
 			result = new ArrayList<>();
-			result = findByLastNameStartingWithAllIgnoreCase("", sort);
+			result = findBySortLastNameStartingWith("", sort);
 		}
 
 		if (fetchFields) {
@@ -65,11 +98,52 @@ public interface AuthorDAO extends CrudRepository<Author, Long> {
 		return result;
 	}
 
-	List<Author> findByLastNameStartingWithAllIgnoreCase(String lastName, Sort sort);
+	/**
+	 * Get one slice of the authors whose names start with the given name, in name order. Use this rather than
+	 * {@link #findByName(String, boolean)} to page through a list that may be long.
+	 *
+	 * @param name
+	 *            the start of the last name, or "last, first".
+	 * @param after
+	 *            the last author of the slice before, or null for the first slice.
+	 * @param size
+	 *            the number of authors in the slice.
+	 * @param fetchFields
+	 *            load the titles of the authors in the slice.
+	 * @return the slice, which knows whether there are more authors after it.
+	 */
+	@Transactional(readOnly = true)
+	default Slice<Author> findByName(String name, Author after, int size, boolean fetchFields) {
+		String[] nameParts = Keysets.splitName(name);
+		Slice<Author> result = findNameSliceAfter(Keysets.startingWith(nameParts[0]), Keysets.startingWith(nameParts[1]),
+				after == null ? "" : after.getSortLastName(), after == null ? "" : after.getSortFirstName(),
+				after == null ? Keysets.FIRST_ID : after.getId(), PageRequest.of(0, size));
+		if (fetchFields && result.hasContent()) {
+			fetchTitles(result.getContent());
+		}
+		return result;
+	}
+
+	@Query("select x from Author x"
+			+ " where x.sortLastName like :lastName escape '\\' and x.sortFirstName like :firstName escape '\\'"
+			+ " and (x.sortLastName > :lastKey or x.sortLastName = :lastKey"
+			+ " and (x.sortFirstName > :firstKey or x.sortFirstName = :firstKey and x.id > :id))"
+			+ " order by x.sortLastName, x.sortFirstName, x.id")
+	Slice<Author> findNameSliceAfter(@Param("lastName") String lastName, @Param("firstName") String firstName,
+			@Param("lastKey") String lastKey, @Param("firstKey") String firstKey, @Param("id") Long id, Pageable pageable);
+
+	// Fills in the titles of the authors that are already loaded, with one query for the slice.
+	@Query("select distinct a from Author a left join fetch a.titles where a in :authors")
+	List<Author> fetchTitles(@Param("authors") List<Author> authors);
+
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Author> findBySortLastNameStartingWith(String lastNameKey, Sort sort);
 
-	List<Author> findByFirstNameStartingWithAllIgnoreCase(String lastName, Sort sort);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Author> findBySortFirstNameStartingWith(String firstNameKey, Sort sort);
 
-	List<Author> findByLastNameStartingWithAndFirstNameStartingWithAllIgnoreCase(String lastName, String firstName, Sort sort);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Author> findBySortLastNameStartingWithAndSortFirstNameStartingWith(String lastNameKey, String firstNameKey, Sort sort);
 
 	List<Author> findByLastNameAndFirstName(String lastName, String firstName);
 }
@@ -17,15 +17,43 @@ package org.kathrynhuxtable.books.persistence.dao;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.hibernate.Hibernate;
 import org.kathrynhuxtable.books.persistence.domain.Borrower;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface BorrowerDAO extends CrudRepository<Borrower, Long> {
 
+	/**
+	 * Load a borrower with the volumes its page shows, and their titles, in one query.
+	 */
+	@Transactional(readOnly = true)
+	default Optional<Borrower> findPageById(Long id) {
+		Optional<Borrower> borrower = findWithVolumesById(id);
+		// Results from the query cache come without their fetches, which are then read from the second-level cache.
+		borrower.ifPresent(b -> b.getVolumes().forEach(volume -> Hibernate.initialize(volume.getEntry())));
+		return borrower;
+	}
+
+	@EntityGraph(attributePaths = { "volumes", "volumes.entry" })
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Optional<Borrower> findWithVolumesById(Long id);
+
 	default List<Borrower> findByName(String name, boolean fetchFields) {
 		String[] nameParts = null;
 		name = name.trim();
@@ -43,16 +71,21 @@ public interface BorrowerDAO extends CrudRepository<Borrower, Long> {
 		}
 	}
 
+	@Transactional(readOnly = true)
 	default List<Borrower> findByName(String lastName, String firstName, boolean fetchFields) {
-		Sort sort = Sort.by(new Sort.Order(Sort.Direction.ASC, "lastName").ignoreCase(), new Sort.Order(Sort.Direction.ASC, "firstName").ignoreCase());
+		Sort sort = Sort.by("sortLastName", "sortFirstName", "id");
+
+		// Match the prefixes against the indexed sort keys, which are already in lower case.
+		String lastKey = DomainObject.nameSortKey(lastName);
+		String firstKey = DomainObject.nameSortKey(firstName);
 
 		List<Borrower> result = null;
-		if (firstName != null && !firstName.isEmpty() && lastName != null && !lastName.isEmpty()) {
-			result = findByLastNameStartingWithAndFirstNameStartingWithAllIgnoreCase(lastName, firstName, sort);
-		} else if (lastName != null && !lastName.isEmpty()) {
-			result = findByLastNameStartingWithAllIgnoreCase(lastName, sort);
-		} else if (firstName != null && !firstName.isEmpty()) {
-			result = findByFirstNameStartingWithAllIgnoreCase(firstName, sort);
+		if (!firstKey.isEmpty() && !lastKey.isEmpty()) {
+			result = findBySortLastNameStartingWithAndSortFirstNameStartingWith(lastKey, firstKey, sort);
+		} else if (!lastKey.isEmpty()) {
+			result = findBySortLastNameStartingWith(lastKey, sort);
+		} else if (!firstKey.isEmpty()) {
+			result = findBySortFirstNameStartingWith(firstKey, sort);
 		} else {
 			result = new ArrayList<>();
 			findAll().forEach(result::add);
@@ -65,11 +98,52 @@ public interface BorrowerDAO extends CrudRepository<Borrower, Long> {
 		return result;
 	}
 
-	List<Borrower> findByLastNameStartingWithAllIgnoreCase(String lastName, Sort sort);
+	/**
+	 * Get one slice of the borrowers whose names start with the given name, in name order. Use this rather than
+	 * {@link #findByName(String, boolean)} to page through a list that may be long.
+	 *
+	 * @param name
+	 *            the start of the last name, or "last, first".
+	 * @param after
+	 *            the last borrower of the slice before, or null for the first slice.
+	 * @param size
+	 *            the number of borrowers in the slice.
+	 * @param fetchFields
+	 *            load the volumes and their titles of the borrowers in the slice.
+	 * @return the slice, which knows whether there are more borrowers after it.
+	 */
+	@Transactional(readOnly = true)
+	default Slice<Borrower> findByName(String name, Borrower after, int size, boolean fetchFields) {
+		String[] nameParts = Keysets.splitName(name);
+		Slice<Borrower> result = findNameSliceAfter(Keysets.startingWith(nameParts[0]), Keysets.startingWith(nameParts[1]),
+				after == null ? "" : after.getSortLastName(), after == null ? "" : after.getSortFirstName(),
+				after == null ? Keysets.FIRST_ID : after.getId(), PageRequest.of(0, size));
+		if (fetchFields && result.hasContent()) {
+			fetchVolumes(result.getContent());
+		}
+		return result;
+	}
+
+	@Query("select x from Borrower x"
+			+ " where x.sortLastName like :lastName escape '\\' and x.sortFirstName like :firstName escape '\\'"
+			+ " and (x.sortLastName > :lastKey or x.sortLastName = :lastKey"
+			+ " and (x.sortFirstName > :firstKey or x.sortFirstName = :firstKey and x.id > :id))"
+			+ " order by x.sortLastName, x.sortFirstName, x.id")
+	Slice<Borrower> findNameSliceAfter(@Param("lastName") String lastName, @Param("firstName") String firstName,
+			@Param("lastKey") String lastKey, @Param("firstKey") String firstKey, @Param("id") Long id, Pageable pageable);
+
+	// Fills in the volumes of the borrowers that are already loaded, with one query for the slice.
+	@Query("select distinct b from Borrower b left join fetch b.volumes v left join fetch v.entry where b in :borrowers")
+	List<Borrower> fetchVolumes(@Param("borrowers") List<Borrower> borrowers);
+
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Borrower> findBySortLastNameStartingWith(String lastNameKey, Sort sort);
 
-	List<Borrower> findByFirstNameStartingWithAllIgnoreCase(String lastName, Sort sort);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Borrower> findBySortFirstNameStartingWith(String firstNameKey, Sort sort);
 
-	List<Borrower> findByLastNameStartingWithAndFirstNameStartingWithAllIgnoreCase(String lastName, String firstName, Sort sort);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Borrower> findBySortLastNameStartingWithAndSortFirstNameStartingWith(String lastNameKey, String firstNameKey, Sort sort);
 
 	List<Borrower> findByLastNameAndFirstName(String lastName, String firstName);
 }
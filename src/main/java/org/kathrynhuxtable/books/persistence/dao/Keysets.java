@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.dao;
+
+import java.util.Locale;
+
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.kathrynhuxtable.books.persistence.domain.TitleTrigram;
+
+/**
+ * Helpers for the keyset queries of the DAOs, which return a list one slice at a time. Each slice starts after the sort
+ * key and id of the last row of the slice before, rather than at an offset, so the database doesn't read and discard
+ * the rows before it, and a slice far down the list costs the same as the first.
+ * <p>
+ * The slices are sorted on the sort key columns that the entities set when they are saved, which are indexed.
+ * <p>
+ * Titles containing some text are found with {@link #TRIGRAM_FILTER}, which uses the index on the title trigrams to
+ * narrow the titles down to those having three of the text's trigrams, before the titles themselves are matched.
+ */
+final class Keysets {
+
+	/** The id to start the first slice after, which is below any generated id. */
+	static final long FIRST_ID = Long.MIN_VALUE;
+
+	/**
+	 * Restricts the titles {@code t} to those having trigrams matching the patterns {@code g0}, {@code g1} and
+	 * {@code g2} from {@link #trigramPatterns(String)}.
+	 */
+	static final String TRIGRAM_FILTER = "t.id in (select g.entryId from TitleTrigram g where g.gram like :g0 escape '\\')"
+			+ " and t.id in (select g.entryId from TitleTrigram g where g.gram like :g1 escape '\\')"
+			+ " and t.id in (select g.entryId from TitleTrigram g where g.gram like :g2 escape '\\')";
+
+	private Keysets() {
+	}
+
+	/**
+	 * @return a like pattern matching the name sort keys that start with the given prefix.
+	 */
+	static String startingWith(String prefix) {
+		return escape(DomainObject.nameSortKey(prefix)) + "%";
+	}
+
+	/**
+	 * @return a like pattern matching the values that contain the given text, ignoring case.
+	 */
+	static String containing(String text) {
+		return "%" + escape(text == null ? "" : text.toLowerCase(Locale.ROOT)) + "%";
+	}
+
+	/**
+	 * Get the trigram patterns for the titles containing some text. A title containing the text has all of the text's
+	 * trigrams, so the patterns are the first, middle and last of them. Text shorter than a trigram is at the start of
+	 * some trigram of the title, so the patterns for it match any trigram starting with it.
+	 *
+	 * @param text
+	 *            the text, which must not be empty.
+	 * @return the like patterns for the parameters of {@link #TRIGRAM_FILTER}.
+	 */
+	static String[] trigramPatterns(String text) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		int length = TitleTrigram.LENGTH;
+		if (lower.length() < length) {
+			String prefix = escape(lower) + "%";
+			return new String[] { prefix, prefix, prefix };
+		}
+		int last = lower.length() - length;
+		return new String[] { escape(lower.substring(0, length)), escape(lower.substring(last / 2, last / 2 + length)),
+				escape(lower.substring(last, last + length)) };
+	}
+
+	/**
+	 * Split a name typed as "last, first" into its last and first name, either of which may be empty.
+	 */
+	static String[] splitName(String name) {
+		name = name == null ? "" : name.trim();
+		if (name.contains(",")) {
+			return name.split(", *", 2);
+		}
+		return new String[] { name, "" };
+	}
+
+	// The queries use a backslash as the like escape character.
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+}
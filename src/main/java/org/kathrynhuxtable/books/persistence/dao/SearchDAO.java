@@ -15,76 +15,693 @@
  */
 package org.kathrynhuxtable.books.persistence.dao;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
 import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
+import org.hibernate.search.MassIndexer;
 import org.hibernate.search.Search;
 import org.hibernate.search.SearchFactory;
+import org.hibernate.search.engine.ProjectionConstants;
+import org.hibernate.search.exception.EmptyQueryException;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.hibernate.search.indexes.spi.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.query.dsl.EntityContext;
 import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.query.dsl.TermMatchingContext;
+import org.hibernate.search.query.facet.FacetSortOrder;
+import org.hibernate.search.spi.SearchIntegrator;
+import org.kathrynhuxtable.books.YAMLConfig;
 import org.kathrynhuxtable.books.persistence.domain.Author;
 import org.kathrynhuxtable.books.persistence.domain.Borrower;
+import org.kathrynhuxtable.books.persistence.domain.DeletedDocument;
 import org.kathrynhuxtable.books.persistence.domain.DomainObject;
 import org.kathrynhuxtable.books.persistence.domain.Title;
 import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.kathrynhuxtable.books.persistence.util.IndexSnapshot;
+import org.kathrynhuxtable.books.persistence.util.RebuildProgressMonitor;
+import org.kathrynhuxtable.books.service.DocumentType;
+import org.kathrynhuxtable.books.service.FacetedResults;
+import org.kathrynhuxtable.books.service.IndexRebuildProgress;
+import org.kathrynhuxtable.books.service.IndexStatistics;
+import org.kathrynhuxtable.books.service.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class SearchDAO {
+	private static final String[] AUTHOR_FIELDS = { "lastName", "firstName", "nationality", "birthPlace", "note" };
+	private static final String[] TITLE_FIELDS = { "title", "category", "form", "haveRead", "note" };
+	private static final String[] VOLUME_FIELDS = { "binding", "publisher", "publicationDate", "isbn", "libraryOfCongress", "note" };
+	private static final String[] BORROWER_FIELDS = { "lastName", "firstName", "checkOutDate", "note" };
+
+	// Edge n-gram fields, searched by prefix in n-gram mode. The object name holds the author, borrower and title names.
+	private static final String[] AUTHOR_PREFIX_FIELDS = { "objectNamePrefix" };
+	private static final String[] TITLE_PREFIX_FIELDS = { "objectNamePrefix" };
+	private static final String[] VOLUME_PREFIX_FIELDS = { "objectNamePrefix", "publisherPrefix" };
+	private static final String[] BORROWER_PREFIX_FIELDS = { "objectNamePrefix" };
+
+	// Faceted fields, each indexed unanalyzed as the field name followed by FACET_FIELD_SUFFIX.
+	private static final String[] TITLE_FACETS = { "category", "form" };
+	private static final String[] VOLUME_FACETS = { "binding", "publisher" };
+	private static final String FACET_FIELD_SUFFIX = "Facet";
+
+	// The database connections the mass indexer may use, leaving the rest of the pool free for the application.
+	private static final int INDEXER_CONNECTIONS = 8;
+
+	// Entities saved shortly before an update may not have been committed when it looked for them, so each update
+	// looks back this much further than the last one started.
+	private static final Duration UPDATE_OVERLAP = Duration.ofMinutes(1);
+
+	private static final Map<DocumentType, Class<? extends DomainObject>> INDEXED_TYPES = new LinkedHashMap<>();
+	static {
+		INDEXED_TYPES.put(DocumentType.AUTHOR, Author.class);
+		INDEXED_TYPES.put(DocumentType.TITLE, Title.class);
+		INDEXED_TYPES.put(DocumentType.VOLUME, Volume.class);
+		INDEXED_TYPES.put(DocumentType.BORROWER, Borrower.class);
+	}
+
+	// The name of the document field holding the entity id, which is the name of the id property of each entity.
+	private static final String ID_FIELD = "id";
+	// The stored fields that search results are built from.
+	private static final Set<String> RESULT_FIELDS = new HashSet<>(Arrays.asList(ID_FIELD, "objectName", "shortDescription", "searchText"));
+
+	private static final Logger LOG = LoggerFactory.getLogger(SearchDAO.class);
+
+	@Autowired
+	private YAMLConfig config;
+
 	@PersistenceContext
 	private EntityManager em;
+	@PersistenceUnit
+	private EntityManagerFactory emf;
 
+	// The indexes as they were before a rebuild started, which serve searches until it is finished.
+	private volatile IndexSnapshot rebuildSnapshot = null;
+
+	/**
+	 * Rebuild the indexes of all document types from the database.
+	 * <p>
+	 * The mass indexer purges the indexes before filling them again, so until the rebuild is finished, searches are run
+	 * against a snapshot of the indexes taken when it started. The rebuilt indexes replace the snapshot all at once.
+	 *
+	 * @param listener
+	 *            receives progress reports on the indexer threads, or null for none.
+	 * @throws IllegalStateException
+	 *             if the indexer of any type fails, in which case the others are cancelled.
+	 */
 	@Transactional
-	public void rebuildIndexes() {
+	public void rebuildIndexes(Consumer<IndexRebuildProgress> listener) {
 		Session session = em.unwrap(Session.class);
 		FullTextSession fullTextSession = Search.getFullTextSession(session);
 
+		int typesInParallel = getTypesToIndexInParallel();
+		int threadsToLoadObjects = getThreadsToLoadObjects(typesInParallel);
+		LOG.info("Rebuilding indexes with " + typesInParallel + " types in parallel and " + threadsToLoadObjects + " threads to load objects");
+
+		// Each type gets its own mass indexer, so that its progress can be reported separately.
+		RebuildProgressMonitor monitor = new RebuildProgressMonitor(listener);
+
+		// Entities saved while the rebuild runs may be missed, so the next update starts from before it.
+		Instant start = Instant.now();
+		IndexSnapshot snapshot = IndexSnapshot.open(fullTextSession.getSearchFactory(), INDEXED_TYPES.values().toArray(new Class<?>[0]));
+		rebuildSnapshot = snapshot;
+		ExecutorService executor = Executors.newFixedThreadPool(typesInParallel);
+		List<Future<?>> futures = new ArrayList<>();
 		try {
-			fullTextSession.createIndexer(Author.class, Title.class, Volume.class, Borrower.class).typesToIndexInParallel(2).batchSizeToLoadObjects(25)
-					.cacheMode(CacheMode.NORMAL).threadsToLoadObjects(5).idFetchSize(150)
-					// .progressMonitor( new MassInd ) //a MassIndexerProgressMonitor implementation
-					.startAndWait();
+			for (Map.Entry<DocumentType, Class<? extends DomainObject>> type : INDEXED_TYPES.entrySet()) {
+				MassIndexer indexer = fullTextSession.createIndexer(type.getValue()).typesToIndexInParallel(1)
+						.batchSizeToLoadObjects(config.getIndexerBatchSize()).cacheMode(CacheMode.NORMAL).threadsToLoadObjects(threadsToLoadObjects)
+						.idFetchSize(config.getIndexerIdFetchSize()).progressMonitor(monitor.monitorFor(type.getKey()));
+				futures.add(executor.submit(() -> {
+					indexer.startAndWait();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			monitor.complete();
+			writeLastUpdated(start);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			futures.forEach(future -> future.cancel(true));
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// The other types' indexes are incomplete too, so stop them and let the caller report the failure.
+			futures.forEach(future -> future.cancel(true));
+			throw new IllegalStateException("Index rebuild failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+			rebuildSnapshot = null;
+			snapshot.close();
+		}
+	}
+
+	/**
+	 * Bring the indexes up to date with the database by reindexing only the entities saved since the last rebuild or
+	 * update, and removing the documents of entities deleted since. If the indexes have never been rebuilt, they are
+	 * rebuilt in full. The work is in proportion to what changed: saves and changes to the authors or contents of a
+	 * title set the last modified times, and deletions are recorded, by
+	 * {@link org.kathrynhuxtable.books.persistence.util.ChangeTrackingListener}.
+	 * <p>
+	 * Titles are indexed into their volumes, and authors show their number of titles, so the volumes and authors of
+	 * changed titles are reindexed as well.
+	 *
+	 * @param listener
+	 *            receives progress reports if the indexes are rebuilt in full, or null for none.
+	 * @return the number of documents reindexed or removed, or -1 if the indexes were rebuilt in full.
+	 */
+	@Transactional
+	public int updateIndexes(Consumer<IndexRebuildProgress> listener) {
+		Instant lastUpdated = readLastUpdated();
+		if (lastUpdated == null) {
+			LOG.info("No record of the last index update, rebuilding indexes");
+			rebuildIndexes(listener);
+			return -1;
+		}
+
+		Instant start = Instant.now();
+		Instant since = lastUpdated.minus(UPDATE_OVERLAP);
+		FullTextSession fullTextSession = Search.getFullTextSession(em.unwrap(Session.class));
+
+		int count = 0;
+		count += reindex(fullTextSession, "select a from Author a where a.lastModified > :since"
+				+ " or exists (select t from Title t join t.authors ta where ta = a and t.lastModified > :since)", since);
+		count += reindex(fullTextSession, "select t from Title t where t.lastModified > :since", since);
+		count += reindex(fullTextSession, "select v from Volume v left join v.entry t where v.lastModified > :since or t.lastModified > :since", since);
+		count += reindex(fullTextSession, "select b from Borrower b where b.lastModified > :since", since);
+		count += purgeDeleted(fullTextSession, since);
+		fullTextSession.flushToIndexes();
+
+		writeLastUpdated(start);
+		LOG.info("Updated " + count + " index documents changed since " + lastUpdated);
+		return count;
+	}
+
+	/**
+	 * Reindex the entities a query finds. They are read a batch at a time, and each batch is written to the indexes and
+	 * dropped from the session before the next is read, so that a large change set isn't held in memory.
+	 */
+	private int reindex(FullTextSession fullTextSession, String jpql, Instant since) {
+		int batchSize = Math.max(1, config.getIndexerBatchSize());
+		int count = 0;
+		try (ScrollableResults results = fullTextSession.createQuery(jpql).setParameter("since", since).setFetchSize(batchSize)
+				.scroll(ScrollMode.FORWARD_ONLY)) {
+			while (results.next()) {
+				fullTextSession.index(results.get(0));
+				if (++count % batchSize == 0) {
+					fullTextSession.flushToIndexes();
+					fullTextSession.clear();
+				}
+			}
+		}
+		fullTextSession.flushToIndexes();
+		fullTextSession.clear();
+		return count;
+	}
+
+	/**
+	 * Remove the documents of the entities deleted since the last update, and forget the deletions that earlier updates
+	 * have already removed.
+	 */
+	private int purgeDeleted(FullTextSession fullTextSession, Instant since) {
+		List<DeletedDocument> deleted = em
+				.createQuery("select d from DeletedDocument d where d.deleted > :since", DeletedDocument.class)
+				.setParameter("since", since).getResultList();
+		for (DeletedDocument document : deleted) {
+			fullTextSession.purge(INDEXED_TYPES.get(document.getDocumentType()), document.getEntityId());
+		}
+		em.createQuery("delete from DeletedDocument d where d.deleted <= :since").setParameter("since", since).executeUpdate();
+		return deleted.size();
+	}
+
+	private Instant readLastUpdated() {
+		Path path = Paths.get(config.getIndexerTimestampFile());
+		if (!Files.exists(path)) {
+			return null;
+		}
+		try {
+			return Instant.parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+		} catch (IOException | DateTimeParseException e) {
+			LOG.warn("Unable to read index timestamp file " + path, e);
+			return null;
+		}
+	}
+
+	private void writeLastUpdated(Instant instant) {
+		Path path = Paths.get(config.getIndexerTimestampFile());
+		try {
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			Files.write(path, instant.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			// The next update will rebuild the indexes in full, which is slow but correct.
+			LOG.warn("Unable to write index timestamp file " + path, e);
+		}
+	}
+
+	/**
+	 * Measure the index of a document type.
+	 *
+	 * @param documentType
+	 *            the document type.
+	 * @return the size, segment count and deleted documents of the index.
+	 */
+	public IndexStatistics getIndexStatistics(DocumentType documentType) {
+		Class<? extends DomainObject> clazz = INDEXED_TYPES.get(documentType);
+		EntityManager statisticsEm = emf.createEntityManager();
+		try {
+			SearchFactory searchFactory = Search.getFullTextSession(statisticsEm.unwrap(Session.class)).getSearchFactory();
+			IndexReaderAccessor accessor = searchFactory.getIndexReaderAccessor();
+			IndexReader reader = accessor.open(clazz);
+			try {
+				return new IndexStatistics(documentType, getIndexSize(searchFactory, clazz), reader.leaves().size(), reader.numDocs(),
+						reader.numDeletedDocs());
+			} finally {
+				accessor.close(reader);
+			}
+		} finally {
+			statisticsEm.close();
 		}
 	}
 
+	/**
+	 * Merge the segments of the index of a document type into one, dropping its deleted documents. This takes a while
+	 * and a lot of I/O on a large index, though searches carry on meanwhile.
+	 *
+	 * @param documentType
+	 *            the document type.
+	 */
+	public void optimizeIndex(DocumentType documentType) {
+		EntityManager optimizeEm = emf.createEntityManager();
+		try {
+			Search.getFullTextSession(optimizeEm.unwrap(Session.class)).getSearchFactory().optimize(INDEXED_TYPES.get(documentType));
+		} finally {
+			optimizeEm.close();
+		}
+	}
+
+	private static long getIndexSize(SearchFactory searchFactory, Class<?> clazz) {
+		IndexManager indexManager = searchFactory.unwrap(SearchIntegrator.class).getIndexManager(clazz.getName());
+		if (!(indexManager instanceof DirectoryBasedIndexManager)) {
+			return 0;
+		}
+		Directory directory = ((DirectoryBasedIndexManager) indexManager).getDirectoryProvider().getDirectory();
+		long size = 0;
+		try {
+			for (String file : directory.listAll()) {
+				try {
+					size += directory.fileLength(file);
+				} catch (NoSuchFileException e) {
+					// Removed by a merge since it was listed.
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn("Unable to measure the " + clazz.getSimpleName() + " index", e);
+		}
+		return size;
+	}
+
+	/**
+	 * Open the index readers of all document types, and read every row of their tables so that the database has them
+	 * in its page cache.
+	 */
+	@Transactional(readOnly = true)
+	public void warmUp() {
+		FullTextSession fullTextSession = Search.getFullTextSession(em.unwrap(Session.class));
+		IndexReaderAccessor accessor = fullTextSession.getSearchFactory().getIndexReaderAccessor();
+		for (Class<? extends DomainObject> clazz : INDEXED_TYPES.values()) {
+			accessor.close(accessor.open(clazz));
+
+			// The version column has no database index, so counting it reads the whole table rather than an index.
+			Long rows = em.createQuery("select count(e.version) from " + clazz.getSimpleName() + " e", Long.class).getSingleResult();
+			LOG.debug("Read " + rows + " rows of " + clazz.getSimpleName());
+		}
+	}
+
+	/**
+	 * There are only four types, and each type in parallel needs its own database connections.
+	 */
+	private int getTypesToIndexInParallel() {
+		int configured = config.getIndexerTypesInParallel();
+		if (configured > 0) {
+			return configured;
+		}
+		return Math.min(DocumentType.values().length, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	}
+
+	/**
+	 * Each type uses its loading threads plus one to fetch ids, all with their own database connections, so the
+	 * automatic setting keeps the total within {@value #INDEXER_CONNECTIONS}.
+	 */
+	private int getThreadsToLoadObjects(int typesInParallel) {
+		int configured = config.getIndexerThreadsToLoadObjects();
+		if (configured > 0) {
+			return configured;
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		return Math.max(1, Math.min(cores / typesInParallel, INDEXER_CONNECTIONS / typesInParallel - 1));
+	}
+
 	@Transactional
-	public List<Author> searchAuthors(String queryString) {
-		return search(queryString, Author.class, "lastName", "firstName", "nationality", "birthPlace", "note");
+	public List<Author> searchAuthors(String queryString, int offset, int limit) {
+		List<Author> authors = search(queryString, offset, limit, Author.class, AUTHOR_FIELDS);
+		// The short description shows the number of titles.
+		authors.forEach(author -> Hibernate.initialize(author.getTitles()));
+		return authors;
 	}
 
 	@Transactional
-	public List<Title> searchTitles(String queryString) {
-		return search(queryString, Title.class, "title", "category", "form", "haveRead", "note");
+	public List<Title> searchTitles(String queryString, int offset, int limit) {
+		return search(queryString, offset, limit, Title.class, TITLE_FIELDS);
 	}
 
 	@Transactional
-	public List<Volume> searchVolumes(String queryString) {
-		return search(queryString, Volume.class, "title", "binding", "publisher", "publicationDate", "isbn", "libraryOfCongress", "note");
+	public List<Volume> searchVolumes(String queryString, int offset, int limit) {
+		List<Volume> volumes = search(queryString, offset, limit, Volume.class, VOLUME_FIELDS);
+		// The results are named after the title.
+		volumes.forEach(volume -> Hibernate.initialize(volume.getEntry()));
+		return volumes;
 	}
 
 	@Transactional
-	public List<Borrower> searchBorrowers(String queryString) {
-		return search(queryString, Borrower.class, "lastName", "firstName", "checkOutDate", "note");
+	public List<Borrower> searchBorrowers(String queryString, int offset, int limit) {
+		return search(queryString, offset, limit, Borrower.class, BORROWER_FIELDS);
 	}
 
-	private <T extends DomainObject> List<T> search(String queryString, Class<T> clazz, String... fields) {
+	/**
+	 * Search one document type, building the results from fields stored in the index. No entities are loaded, so the
+	 * database is not touched.
+	 *
+	 * @param queryString
+	 *            the query.
+	 * @param offset
+	 *            the number of hits to skip.
+	 * @param limit
+	 *            the maximum number of hits to return.
+	 * @param documentType
+	 *            the type of document to search.
+	 * @return the search results, in index order.
+	 */
+	public List<SearchResult> searchResults(String queryString, int offset, int limit, DocumentType documentType) {
+		switch (documentType) {
+		case AUTHOR:
+			return searchProjection(queryString, offset, limit, documentType, Author.class, AUTHOR_FIELDS);
+		case TITLE:
+			return searchProjection(queryString, offset, limit, documentType, Title.class, TITLE_FIELDS);
+		case VOLUME:
+			return searchProjection(queryString, offset, limit, documentType, Volume.class, VOLUME_FIELDS);
+		case BORROWER:
+			return searchProjection(queryString, offset, limit, documentType, Borrower.class, BORROWER_FIELDS);
+		default:
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Search all document types with a single query, so that the hits of all types are ranked against each other by
+	 * relevance. The offset and limit apply to the hits of all types together.
+	 *
+	 * @param queryString
+	 *            the query.
+	 * @param offset
+	 *            the number of hits to skip.
+	 * @param limit
+	 *            the maximum number of hits to return.
+	 * @return the search results, in relevance order.
+	 */
+	public List<SearchResult> searchAllResults(String queryString, int offset, int limit) {
+		Map<String, DocumentType> types = new LinkedHashMap<>();
+		for (Map.Entry<DocumentType, Class<? extends DomainObject>> type : INDEXED_TYPES.entrySet()) {
+			types.put(type.getValue().getName(), type.getKey());
+		}
+
+		EntityManager projectionEm = emf.createEntityManager();
+		try {
+			FullTextSession fullTextSession = Search.getFullTextSession(projectionEm.unwrap(Session.class));
+
+			// Each entity's query is restricted to its own class, since field names such as "title" and "note" are
+			// shared between the entities.
+			BooleanQuery.Builder builder = new BooleanQuery.Builder();
+			builder.add(classQuery(queryString, fullTextSession, Author.class, AUTHOR_FIELDS), Occur.SHOULD);
+			builder.add(classQuery(queryString, fullTextSession, Title.class, TITLE_FIELDS), Occur.SHOULD);
+			builder.add(classQuery(queryString, fullTextSession, Volume.class, VOLUME_FIELDS), Occur.SHOULD);
+			builder.add(classQuery(queryString, fullTextSession, Borrower.class, BORROWER_FIELDS), Occur.SHOULD);
+
+			IndexSnapshot snapshot = rebuildSnapshot;
+			if (snapshot != null) {
+				List<SearchResult> results = snapshot.search(builder.build(), null, offset, limit, document -> {
+					DocumentType documentType = types.get(document.get(ProjectionConstants.OBJECT_CLASS));
+					return toSearchResult(documentType, document);
+				});
+				if (results != null) {
+					return results;
+				}
+			}
+
+			FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(builder.build(), Author.class, Title.class, Volume.class, Borrower.class);
+			fullTextQuery.setProjection(ProjectionConstants.ID, ProjectionConstants.OBJECT_CLASS, "objectName", "shortDescription", "searchText");
+			fullTextQuery.setFirstResult(offset);
+			fullTextQuery.setMaxResults(limit);
+
+			List<SearchResult> results = new ArrayList<>();
+			for (Object row : fullTextQuery.list()) {
+				Object[] values = (Object[]) row;
+				results.add(new SearchResult(types.get(((Class<?>) values[1]).getName()), (String) values[2], (Long) values[0], (String) values[3], (String) values[4]));
+			}
+			return results;
+		} finally {
+			projectionEm.close();
+		}
+	}
+
+	/**
+	 * Search one document type, and count the hits for each value of its facets: category and form for titles, and
+	 * binding and publisher for volumes. The counts cover all the hits, not just the page returned, and are computed
+	 * from the index without loading any entities.
+	 *
+	 * @param queryString
+	 *            the query, or null or empty to count all documents of the type.
+	 * @param offset
+	 *            the number of hits to skip.
+	 * @param limit
+	 *            the maximum number of hits to return, or zero for the counts alone.
+	 * @param documentType
+	 *            the type of document to search.
+	 * @return the page of results and the facet counts.
+	 */
+	public FacetedResults searchFacets(String queryString, int offset, int limit, DocumentType documentType) {
+		Class<? extends DomainObject> clazz = INDEXED_TYPES.get(documentType);
+		String[] facets = getFacets(clazz);
+
+		EntityManager projectionEm = emf.createEntityManager();
+		try {
+			FullTextSession fullTextSession = Search.getFullTextSession(projectionEm.unwrap(Session.class));
+			QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(clazz).get();
+
+			org.apache.lucene.search.Query luceneQuery = queryString == null || queryString.trim().isEmpty() ? new MatchAllDocsQuery()
+					: buildLuceneQuery(queryString, fullTextSession, clazz, getFields(clazz));
+			FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(luceneQuery, clazz);
+			for (String facet : facets) {
+				fullTextQuery.getFacetManager().enableFaceting(qb.facet().name(facet).onField(facet + FACET_FIELD_SUFFIX).discrete()
+						.orderedBy(FacetSortOrder.COUNT_DESC).includeZeroCounts(false).createFacetingRequest());
+			}
+			fullTextQuery.setProjection(ProjectionConstants.ID, "objectName", "shortDescription", "searchText");
+			setTitleSort(fullTextQuery, clazz);
+			fullTextQuery.setFirstResult(offset);
+			fullTextQuery.setMaxResults(limit);
+
+			List<SearchResult> results = new ArrayList<>();
+			if (limit > 0) {
+				for (Object row : fullTextQuery.list()) {
+					Object[] values = (Object[]) row;
+					results.add(new SearchResult(documentType, (String) values[1], (Long) values[0], (String) values[2], (String) values[3]));
+				}
+			}
+
+			Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+			for (String facet : facets) {
+				Map<String, Integer> facetCounts = new LinkedHashMap<>();
+				fullTextQuery.getFacetManager().getFacets(facet).forEach(value -> facetCounts.put(value.getValue(), value.getCount()));
+				counts.put(facet, facetCounts);
+			}
+			return new FacetedResults(results, fullTextQuery.getResultSize(), counts);
+		} finally {
+			projectionEm.close();
+		}
+	}
+
+	/**
+	 * Read the results of every document of a type from the fields stored in the index, without searching or touching
+	 * the database.
+	 *
+	 * @param documentType
+	 *            the document type.
+	 * @return the results, in index order.
+	 */
+	public List<SearchResult> allResults(DocumentType documentType) {
+		EntityManager projectionEm = emf.createEntityManager();
+		try {
+			IndexReaderAccessor accessor = Search.getFullTextSession(projectionEm.unwrap(Session.class)).getSearchFactory().getIndexReaderAccessor();
+			IndexReader reader = accessor.open(INDEXED_TYPES.get(documentType));
+			try {
+				List<SearchResult> results = new ArrayList<>();
+				Bits liveDocs = MultiFields.getLiveDocs(reader);
+				for (int i = 0; i < reader.maxDoc(); i++) {
+					if (liveDocs == null || liveDocs.get(i)) {
+						results.add(toSearchResult(documentType, reader.document(i, RESULT_FIELDS)));
+					}
+				}
+				return results;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				accessor.close(reader);
+			}
+		} finally {
+			projectionEm.close();
+		}
+	}
+
+	/**
+	 * Sort titles and volumes by title, using the sort key stored in the index, so that each page of results follows
+	 * on from the one before. Other types are left in relevance order.
+	 */
+	private void setTitleSort(FullTextQuery fullTextQuery, Class<? extends DomainObject> clazz) {
+		Sort sort = getTitleSort(clazz);
+		if (sort != null) {
+			fullTextQuery.setSort(sort);
+		}
+	}
+
+	private Sort getTitleSort(Class<? extends DomainObject> clazz) {
+		if (clazz == Title.class || clazz == Volume.class) {
+			return new Sort(new SortField(DomainObject.TITLE_SORT_FIELD, SortField.Type.STRING));
+		}
+		return null;
+	}
+
+	private SearchResult toSearchResult(DocumentType documentType, Document document) {
+		return new SearchResult(documentType, document.get("objectName"), Long.valueOf(document.get(ID_FIELD)), document.get("shortDescription"),
+				document.get("searchText"));
+	}
+
+	private org.apache.lucene.search.Query classQuery(String queryString, FullTextSession fullTextSession, Class<? extends DomainObject> clazz,
+			String... fields) {
+		return new BooleanQuery.Builder().add(buildLuceneQuery(queryString, fullTextSession, clazz, fields), Occur.MUST)
+				.add(new TermQuery(new Term(ProjectionConstants.OBJECT_CLASS, clazz.getName())), Occur.FILTER).build();
+	}
+
+	private <T extends DomainObject> List<T> search(String queryString, int offset, int limit, Class<T> clazz, String... fields) {
 		Session session = em.unwrap(Session.class);
 		FullTextSession fullTextSession = Search.getFullTextSession(session);
 
+		IndexSnapshot snapshot = rebuildSnapshot;
+		if (snapshot != null) {
+			List<Long> ids = snapshot.search(classQuery(queryString, fullTextSession, clazz, fields), getTitleSort(clazz), offset, limit,
+					document -> Long.valueOf(document.get(ID_FIELD)));
+			if (ids != null) {
+				return ids.stream().map(id -> em.find(clazz, id)).filter(Objects::nonNull).collect(Collectors.toList());
+			}
+		}
+
 		org.apache.lucene.search.Query luceneQuery = buildLuceneQuery(queryString, fullTextSession, clazz, fields);
 
+		FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(luceneQuery, clazz);
+		setTitleSort(fullTextQuery, clazz);
+		fullTextQuery.setFirstResult(offset);
+		fullTextQuery.setMaxResults(limit);
 		@SuppressWarnings("unchecked")
-		org.hibernate.query.Query<T> fullTextQuery = fullTextSession.createFullTextQuery(luceneQuery, clazz);
-		return fullTextQuery.list(); // return a list of managed objects
+		List<T> results = fullTextQuery.list(); // return a list of managed objects
+		return results;
+	}
+
+	private List<SearchResult> searchProjection(String queryString, int offset, int limit, DocumentType documentType, Class<? extends DomainObject> clazz,
+			String... fields) {
+		// Use a private entity manager without a transaction. A projection query never needs a JDBC connection, and the
+		// session only acquires one on demand.
+		EntityManager projectionEm = emf.createEntityManager();
+		try {
+			FullTextSession fullTextSession = Search.getFullTextSession(projectionEm.unwrap(Session.class));
+
+			IndexSnapshot snapshot = rebuildSnapshot;
+			if (snapshot != null) {
+				List<SearchResult> results = snapshot.search(classQuery(queryString, fullTextSession, clazz, fields), getTitleSort(clazz), offset, limit,
+						document -> toSearchResult(documentType, document));
+				if (results != null) {
+					return results;
+				}
+			}
+
+			org.apache.lucene.search.Query luceneQuery = buildLuceneQuery(queryString, fullTextSession, clazz, fields);
+
+			FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(luceneQuery, clazz);
+			fullTextQuery.setProjection(ProjectionConstants.ID, "objectName", "shortDescription", "searchText");
+			setTitleSort(fullTextQuery, clazz);
+			fullTextQuery.setFirstResult(offset);
+			fullTextQuery.setMaxResults(limit);
+
+			List<SearchResult> results = new ArrayList<>();
+			for (Object row : fullTextQuery.list()) {
+				Object[] values = (Object[]) row;
+				results.add(new SearchResult(documentType, (String) values[1], (Long) values[0], (String) values[2], (String) values[3]));
+			}
+			return results;
+		} finally {
+			projectionEm.close();
+		}
 	}
 
 	private org.apache.lucene.search.Query buildLuceneQuery(String queryString, FullTextSession fullTextSession, Class<? extends DomainObject> clazz,
@@ -93,6 +710,9 @@ public class SearchDAO {
 		QueryBuilder qb = searchFactory.buildQueryBuilder().forEntity(Title.class).get();
 
 		if (queryString.matches("[a-zA-Z0-9 ']*")) {
+			if (config.isSearchNgram() && !queryString.trim().isEmpty()) {
+				return buildPrefixQuery(queryString, searchFactory, clazz, fields);
+			}
 			return qb.simpleQueryString().onFields("objectName", fields).withAndAsDefaultOperator().matching(queryString + "*").createQuery();
 		} else {
 			org.apache.lucene.queryparser.classic.QueryParser parser = new QueryParser("objectName", searchFactory.getAnalyzer(clazz));
@@ -103,4 +723,78 @@ public class SearchDAO {
 			}
 		}
 	}
+
+	/**
+	 * Build a query matching each word of the query as a prefix of a word in one of the edge n-gram fields, or as a
+	 * whole word in one of the other fields. Every lookup is a single term, so no wildcard has to be expanded over the
+	 * term dictionary.
+	 */
+	private org.apache.lucene.search.Query buildPrefixQuery(String queryString, SearchFactory searchFactory, Class<? extends DomainObject> clazz,
+			String... fields) {
+		String[] prefixFields = getPrefixFields(clazz);
+		EntityContext entityContext = searchFactory.buildQueryBuilder().forEntity(clazz);
+		for (String prefixField : prefixFields) {
+			entityContext.overridesForField(prefixField, DomainObject.PREFIX_QUERY_ANALYZER);
+		}
+		QueryBuilder qb = entityContext.get();
+
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for (String word : queryString.trim().split(" +")) {
+			// Longer prefixes aren't indexed, so match on the longest one that is.
+			String prefix = word.length() > DomainObject.PREFIX_MAX_LENGTH ? word.substring(0, DomainObject.PREFIX_MAX_LENGTH) : word;
+			BooleanQuery.Builder wordQuery = new BooleanQuery.Builder();
+			addKeywordQuery(wordQuery, qb, word, "objectName", fields);
+			addKeywordQuery(wordQuery, qb, prefix, prefixFields[0], prefixFields);
+			builder.add(wordQuery.build(), Occur.MUST);
+		}
+		return builder.build();
+	}
+
+	private void addKeywordQuery(BooleanQuery.Builder builder, QueryBuilder qb, String word, String field, String... otherFields) {
+		TermMatchingContext context = qb.keyword().onField(field).ignoreFieldBridge();
+		for (String otherField : otherFields) {
+			if (!otherField.equals(field)) {
+				context = context.andField(otherField).ignoreFieldBridge();
+			}
+		}
+		try {
+			builder.add(context.matching(word).createQuery(), Occur.SHOULD);
+		} catch (EmptyQueryException e) {
+			// A stop word is dropped by the analyzer of the whole word fields, but can still be a prefix.
+		}
+	}
+
+	private String[] getFields(Class<? extends DomainObject> clazz) {
+		if (clazz == Author.class) {
+			return AUTHOR_FIELDS;
+		} else if (clazz == Title.class) {
+			return TITLE_FIELDS;
+		} else if (clazz == Volume.class) {
+			return VOLUME_FIELDS;
+		} else {
+			return BORROWER_FIELDS;
+		}
+	}
+
+	private String[] getFacets(Class<? extends DomainObject> clazz) {
+		if (clazz == Title.class) {
+			return TITLE_FACETS;
+		} else if (clazz == Volume.class) {
+			return VOLUME_FACETS;
+		} else {
+			return new String[0];
+		}
+	}
+
+	private String[] getPrefixFields(Class<? extends DomainObject> clazz) {
+		if (clazz == Author.class) {
+			return AUTHOR_PREFIX_FIELDS;
+		} else if (clazz == Title.class) {
+			return TITLE_PREFIX_FIELDS;
+		} else if (clazz == Volume.class) {
+			return VOLUME_PREFIX_FIELDS;
+		} else {
+			return BORROWER_PREFIX_FIELDS;
+		}
+	}
 }
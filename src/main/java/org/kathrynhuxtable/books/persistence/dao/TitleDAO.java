@@ -15,25 +15,104 @@
  */
 package org.kathrynhuxtable.books.persistence.dao;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.hibernate.Hibernate;
 import org.kathrynhuxtable.books.persistence.domain.Author;
 import org.kathrynhuxtable.books.persistence.domain.Title;
-import org.kathrynhuxtable.books.service.TitlePropertyComparator;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface TitleDAO extends CrudRepository<Title, Long> {
 
+	/**
+	 * Load a title with everything its page shows. Fetching all four collections in one query would return the product
+	 * of their sizes, so it takes two, which fill in the same title.
+	 */
+	@Transactional(readOnly = true)
+	default Optional<Title> findPageById(Long id) {
+		Optional<Title> title = findWithAuthorsAndVolumesById(id);
+		if (title.isPresent()) {
+			findWithContentsAndCollectedInById(id);
+			// Results from the query cache come without their fetches, which are then read from the second-level cache.
+			Hibernate.initialize(title.get().getAuthors());
+			// Each author's description counts its titles, and is shown and suggested once the session is closed.
+			title.get().getAuthors().forEach(author -> Hibernate.initialize(author.getTitles()));
+			Hibernate.initialize(title.get().getVolumes());
+			Hibernate.initialize(title.get().getContents());
+			Hibernate.initialize(title.get().getCollectedIn());
+		}
+		return title;
+	}
+
+	@EntityGraph(attributePaths = { "authors", "volumes" })
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Optional<Title> findWithAuthorsAndVolumesById(Long id);
+
+	@EntityGraph(attributePaths = { "contents", "collectedIn" })
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Optional<Title> findWithContentsAndCollectedInById(Long id);
+
+	/**
+	 * Find the titles that contain the given text, ignoring case, in title order.
+	 */
 	default List<Title> findByTitle(String title) {
-		List<Title> result = findByTitleContainsIgnoreCaseOrderByTitleAsc(title);
-		Collections.sort(result, new TitlePropertyComparator.TitleComparator());
-		return result;
+		if (title == null || title.isEmpty()) {
+			return findAllByOrderBySortTitleAscIdAsc();
+		}
+		String[] grams = Keysets.trigramPatterns(title);
+		return findContaining(Keysets.containing(title), grams[0], grams[1], grams[2]);
 	}
 
-	List<Title> findByTitleContainsIgnoreCaseOrderByTitleAsc(String title);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Title> findAllByOrderBySortTitleAscIdAsc();
+
+	@Query("select t from Title t where " + Keysets.TRIGRAM_FILTER + " and lower(t.title) like :title escape '\\'"
+			+ " order by t.sortTitle, t.id")
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Title> findContaining(@Param("title") String title, @Param("g0") String g0, @Param("g1") String g1, @Param("g2") String g2);
+
+	/**
+	 * Get one slice of the titles that contain the given text, in title order. Use this rather than
+	 * {@link #findByTitle(String)} to page through a list that may be long.
+	 *
+	 * @param title
+	 *            the text the titles contain.
+	 * @param after
+	 *            the last title of the slice before, or null for the first slice.
+	 * @param size
+	 *            the number of titles in the slice.
+	 * @return the slice, which knows whether there are more titles after it.
+	 */
+	default Slice<Title> findByTitle(String title, Title after, int size) {
+		String titleKey = after == null ? "" : after.getSortTitle();
+		Long id = after == null ? Keysets.FIRST_ID : after.getId();
+		if (title == null || title.isEmpty()) {
+			return findTitleSliceAfter(titleKey, id, PageRequest.of(0, size));
+		}
+		String[] grams = Keysets.trigramPatterns(title);
+		return findContainingSliceAfter(Keysets.containing(title), grams[0], grams[1], grams[2], titleKey, id, PageRequest.of(0, size));
+	}
+
+	@Query("select t from Title t where t.sortTitle > :titleKey or t.sortTitle = :titleKey and t.id > :id order by t.sortTitle, t.id")
+	Slice<Title> findTitleSliceAfter(@Param("titleKey") String titleKey, @Param("id") Long id, Pageable pageable);
+
+	@Query("select t from Title t where " + Keysets.TRIGRAM_FILTER + " and lower(t.title) like :title escape '\\'"
+			+ " and (t.sortTitle > :titleKey or t.sortTitle = :titleKey and t.id > :id) order by t.sortTitle, t.id")
+	Slice<Title> findContainingSliceAfter(@Param("title") String title, @Param("g0") String g0, @Param("g1") String g1,
+			@Param("g2") String g2, @Param("titleKey") String titleKey, @Param("id") Long id, Pageable pageable);
 
 	List<Title> findByTitleAndAuthors(String title, List<Author> authors);
 
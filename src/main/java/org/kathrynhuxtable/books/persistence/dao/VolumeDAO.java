@@ -15,32 +15,103 @@
  */
 package org.kathrynhuxtable.books.persistence.dao;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.hibernate.Hibernate;
 import org.kathrynhuxtable.books.persistence.domain.Volume;
-import org.kathrynhuxtable.books.service.TitlePropertyComparator;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface VolumeDAO extends CrudRepository<Volume, Long> {
 
+	/**
+	 * Load a volume with the title and borrower its page shows, in one query.
+	 */
+	@Transactional(readOnly = true)
+	default Optional<Volume> findPageById(Long id) {
+		Optional<Volume> volume = findWithEntryAndBorrowerById(id);
+		// Results from the query cache come without their fetches, which are then read from the second-level cache.
+		volume.ifPresent(v -> {
+			Hibernate.initialize(v.getEntry());
+			Hibernate.initialize(v.getBorrower());
+		});
+		return volume;
+	}
+
+	@EntityGraph(attributePaths = { "entry", "borrower" })
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	Optional<Volume> findWithEntryAndBorrowerById(Long id);
+
+	@Transactional(readOnly = true)
 	default List<Volume> findByTitle(String title, boolean fetchFields) {
 		if (title == null) {
 			title = "";
 		}
 
 		List<Volume> result;
-		result = findByEntryTitleContainsIgnoreCase(title);
-		Collections.sort(result, new TitlePropertyComparator.VolumeComparator());
+		if (title.isEmpty()) {
+			result = findAllByOrderByEntrySortTitleAscIdAsc();
+		} else {
+			String[] grams = Keysets.trigramPatterns(title);
+			result = findContaining(Keysets.containing(title), grams[0], grams[1], grams[2]);
+		}
 
 		if (fetchFields) {
-			result.stream().forEach(volume -> volume.getEntry());
+			// Results from the query cache come without their fetches, and the entry is only a proxy until initialized.
+			result.stream().forEach(volume -> Hibernate.initialize(volume.getEntry()));
 		}
 
 		return result;
 	}
 
-	List<Volume> findByEntryTitleContainsIgnoreCase(String title);
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Volume> findAllByOrderByEntrySortTitleAscIdAsc();
+
+	@Query("select v from Volume v join v.entry t where " + Keysets.TRIGRAM_FILTER + " and lower(t.title) like :title escape '\\'"
+			+ " order by t.sortTitle, v.id")
+	@QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+	List<Volume> findContaining(@Param("title") String title, @Param("g0") String g0, @Param("g1") String g1, @Param("g2") String g2);
+
+	/**
+	 * Get one slice of the volumes whose titles contain the given text, in title order, with their titles loaded. Use
+	 * this rather than {@link #findByTitle(String, boolean)} to page through a list that may be long.
+	 *
+	 * @param title
+	 *            the text the titles contain.
+	 * @param after
+	 *            the last volume of the slice before, or null for the first slice.
+	 * @param size
+	 *            the number of volumes in the slice.
+	 * @return the slice, which knows whether there are more volumes after it.
+	 */
+	default Slice<Volume> findByTitle(String title, Volume after, int size) {
+		String titleKey = after == null || after.getEntry() == null ? "" : after.getEntry().getSortTitle();
+		Long id = after == null ? Keysets.FIRST_ID : after.getId();
+		if (title == null || title.isEmpty()) {
+			return findTitleSliceAfter(titleKey, id, PageRequest.of(0, size));
+		}
+		String[] grams = Keysets.trigramPatterns(title);
+		return findContainingSliceAfter(Keysets.containing(title), grams[0], grams[1], grams[2], titleKey, id, PageRequest.of(0, size));
+	}
+
+	@Query("select v from Volume v join fetch v.entry t"
+			+ " where t.sortTitle > :titleKey or t.sortTitle = :titleKey and v.id > :id order by t.sortTitle, v.id")
+	Slice<Volume> findTitleSliceAfter(@Param("titleKey") String titleKey, @Param("id") Long id, Pageable pageable);
+
+	@Query("select v from Volume v join fetch v.entry t where " + Keysets.TRIGRAM_FILTER + " and lower(t.title) like :title escape '\\'"
+			+ " and (t.sortTitle > :titleKey or t.sortTitle = :titleKey and v.id > :id) order by t.sortTitle, v.id")
+	Slice<Volume> findContainingSliceAfter(@Param("title") String title, @Param("g0") String g0, @Param("g1") String g1,
+			@Param("g2") String g2, @Param("titleKey") String titleKey, @Param("id") Long id, Pageable pageable);
 }
@@ -16,6 +16,7 @@
 package org.kathrynhuxtable.books.persistence.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -29,11 +30,17 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.SortComparator;
+import org.hibernate.search.annotations.Analyzer;
 import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.Store;
 import org.kathrynhuxtable.books.service.DocumentType;
@@ -41,7 +48,10 @@ import org.kathrynhuxtable.books.service.TitlePropertyComparator;
 
 @Entity
 @Indexed
-@Table(schema = "APP", name = "AUTHORS")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(schema = "APP", name = "AUTHORS", indexes = { @javax.persistence.Index(name = "AUTHORS_LAST_MODIFIED", columnList = "LAST_MODIFIED"),
+		@javax.persistence.Index(name = "AUTHORS_SORT_NAME", columnList = "SORT_LAST_NAME, SORT_FIRST_NAME, AUTHOR_ID"),
+		@javax.persistence.Index(name = "AUTHORS_SORT_FIRST_NAME", columnList = "SORT_FIRST_NAME, AUTHOR_ID") })
 public class Author implements DomainObject, Cloneable, Comparable<Author>, Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -52,11 +62,18 @@ public class Author implements DomainObject, Cloneable, Comparable<Author>, Seri
 	private Long id;
 
 	private long version;
+	@Column(name = "LAST_MODIFIED")
+	private Instant lastModified;
 	@Column(name = "LAST_NAME", nullable = false)
 	@Field
 	private String lastName;
 	@Field
 	private String firstName;
+	// The sort keys of the names, set when the author is saved.
+	@Column(name = "SORT_LAST_NAME")
+	private String sortLastName;
+	@Column(name = "SORT_FIRST_NAME")
+	private String sortFirstName;
 	@Field
 	private String nationality;
 	@Field
@@ -66,6 +83,7 @@ public class Author implements DomainObject, Cloneable, Comparable<Author>, Seri
 	@Field
 	private String note;
 
+	// Not cached: Title.authors maps the same join table, and changes made through it wouldn't evict this side.
 	@ManyToMany(fetch = FetchType.LAZY)
 	@JoinTable(name = "ENTRY_AUTHORS", joinColumns = { @JoinColumn(name = "AUTHOR_ID") }, inverseJoinColumns = { @JoinColumn(name = "ENTRY_ID") })
 	@SortComparator(value = TitlePropertyComparator.TitleComparator.class)
@@ -229,11 +247,50 @@ public class Author implements DomainObject, Cloneable, Comparable<Author>, Seri
 		this.version = version;
 	}
 
+	/**
+	 * @return the time the entity was last saved, or null if it hasn't been saved since the column was added
+	 */
+	public Instant getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @param lastModified
+	 *            the lastModified to set
+	 */
+	public void setLastModified(Instant lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return the sort key of the last name, as of when the author was last saved.
+	 */
+	public String getSortLastName() {
+		return sortLastName;
+	}
+
+	/**
+	 * @return the sort key of the first name, as of when the author was last saved.
+	 */
+	public String getSortFirstName() {
+		return sortFirstName;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateLastModified() {
+		lastModified = Instant.now();
+		sortLastName = DomainObject.nameSortKey(lastName);
+		sortFirstName = DomainObject.nameSortKey(firstName);
+	}
+
 	@Field(name = "objectName", store = Store.YES)
+	@Field(name = "objectNamePrefix", analyzer = @Analyzer(definition = PREFIX_ANALYZER))
 	public String getName() {
 		return toString();
 	}
 
+	@Field(name = "shortDescription", store = Store.YES, index = Index.NO)
 	public String getShortDescription() {
 		StringBuffer result = new StringBuffer();
 		result.append(getTitles().size() + " Titles");
@@ -244,6 +301,11 @@ public class Author implements DomainObject, Cloneable, Comparable<Author>, Seri
 		return result.toString();
 	}
 
+	@Field(name = "searchText", store = Store.YES, index = Index.NO)
+	public String getSearchText() {
+		return DomainObject.joinSearchText(getName(), lastName, firstName, nationality, birthPlace, note);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -16,6 +16,7 @@
 package org.kathrynhuxtable.books.persistence.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,11 +28,17 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.SortComparator;
+import org.hibernate.search.annotations.Analyzer;
 import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.Store;
 import org.kathrynhuxtable.books.service.DocumentType;
@@ -39,7 +46,10 @@ import org.kathrynhuxtable.books.service.TitlePropertyComparator;
 
 @Entity
 @Indexed
-@Table(schema = "APP", name = "CHECK_OUTS")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(schema = "APP", name = "CHECK_OUTS", indexes = { @javax.persistence.Index(name = "CHECK_OUTS_LAST_MODIFIED", columnList = "LAST_MODIFIED"),
+		@javax.persistence.Index(name = "CHECK_OUTS_SORT_NAME", columnList = "SORT_LAST_NAME, SORT_FIRST_NAME, CHECK_OUT_ID"),
+		@javax.persistence.Index(name = "CHECK_OUTS_SORT_FIRST_NAME", columnList = "SORT_FIRST_NAME, CHECK_OUT_ID") })
 public class Borrower implements DomainObject, Cloneable, Comparable<Borrower>, Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -50,16 +60,24 @@ public class Borrower implements DomainObject, Cloneable, Comparable<Borrower>,
 	private Long id = new Long(-1);
 
 	private long version;
+	@Column(name = "LAST_MODIFIED")
+	private Instant lastModified;
 	@Field
 	private String lastName;
 	@Field
 	private String firstName;
+	// The sort keys of the names, set when the borrower is saved.
+	@Column(name = "SORT_LAST_NAME")
+	private String sortLastName;
+	@Column(name = "SORT_FIRST_NAME")
+	private String sortFirstName;
 	@Field
 	private String checkOutDate;
 	@Field
 	private String note;
 
 	@OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL, mappedBy="borrower")
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	@SortComparator(value = TitlePropertyComparator.VolumeComparator.class)
 	private List<Volume> volumes = new ArrayList<Volume>();
 
@@ -185,11 +203,51 @@ public class Borrower implements DomainObject, Cloneable, Comparable<Borrower>,
 		this.version = version;
 	}
 
+	/**
+	 * @return the time the entity was last saved, or null if it hasn't been saved since the column was added
+	 */
+	public Instant getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @param lastModified
+	 *            the lastModified to set
+	 */
+	public void setLastModified(Instant lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return the sort key of the last name, as of when the borrower was last saved.
+	 */
+	public String getSortLastName() {
+		return sortLastName;
+	}
+
+	/**
+	 * @return the sort key of the first name, as of when the borrower was last saved.
+	 */
+	public String getSortFirstName() {
+		return sortFirstName;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateLastModified() {
+		lastModified = Instant.now();
+		sortLastName = DomainObject.nameSortKey(lastName);
+		sortFirstName = DomainObject.nameSortKey(firstName);
+	}
+
+	// The search results show the borrower details rather than the short description.
+	@Field(name = "shortDescription", store = Store.YES, index = Index.NO)
 	public String getDetails() {
 		return toString();
 	}
 
 	@Field(name = "objectName", store = Store.YES)
+	@Field(name = "objectNamePrefix", analyzer = @Analyzer(definition = PREFIX_ANALYZER))
     public String getName() {
         if (lastName != null && lastName.length() > 0 && firstName != null && firstName.length() > 0) {
             return lastName + ", " + firstName;
@@ -206,6 +264,11 @@ public class Borrower implements DomainObject, Cloneable, Comparable<Borrower>,
 		return getName();
 	}
 
+	@Field(name = "searchText", store = Store.YES, index = Index.NO)
+	public String getSearchText() {
+		return DomainObject.joinSearchText(getName(), lastName, firstName, checkOutDate, note);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
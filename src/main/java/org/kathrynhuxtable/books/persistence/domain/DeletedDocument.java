@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import org.kathrynhuxtable.books.service.DocumentType;
+
+/**
+ * A record that an indexed entity was deleted, so that an index update can remove its document without comparing
+ * every id in the database with every id in the index. It is written by
+ * {@link org.kathrynhuxtable.books.persistence.util.ChangeTrackingListener} whenever an entity is deleted, and removed
+ * once the indexes have caught up with it.
+ */
+@Entity
+@IdClass(DeletedDocument.Key.class)
+@Table(schema = "APP", name = "DELETED_DOCUMENTS", indexes = @javax.persistence.Index(name = "DELETED_DOCUMENTS_DELETED", columnList = "DELETED"))
+public class DeletedDocument implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "DOCUMENT_TYPE", length = 16)
+	private DocumentType documentType;
+	@Id
+	@Column(name = "ENTITY_ID")
+	private Long entityId;
+	@Column(name = "DELETED")
+	private Instant deleted;
+
+	public DocumentType getDocumentType() {
+		return documentType;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public Instant getDeleted() {
+		return deleted;
+	}
+
+	public static class Key implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private DocumentType documentType;
+		private Long entityId;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return documentType == other.documentType && Objects.equals(entityId, other.entityId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(documentType, entityId);
+		}
+	}
+}
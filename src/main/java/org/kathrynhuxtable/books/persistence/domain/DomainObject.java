@@ -15,10 +15,56 @@
  */
 package org.kathrynhuxtable.books.persistence.domain;
 
+import java.util.Locale;
+import java.util.StringJoiner;
+
 import org.kathrynhuxtable.books.service.DocumentType;
 
 public interface DomainObject {
+	/**
+	 * The analyzer for prefix fields, which indexes the leading edge n-grams of each word so that prefixes are found by
+	 * term lookup. It is defined on {@link Title}.
+	 */
+	String PREFIX_ANALYZER = "prefix";
+	/** The analyzer for queries against prefix fields, which doesn't split the query into n-grams. */
+	String PREFIX_QUERY_ANALYZER = "prefixQuery";
+	/** The longest prefix indexed by the prefix analyzer. */
+	int PREFIX_MAX_LENGTH = 20;
+	/** The sortable index field holding the title sort key of titles and volumes. */
+	String TITLE_SORT_FIELD = "titleSort";
+
 	Long getId();
 	DocumentType getDocumentType();
 	String getShortDescription();
+
+	/**
+	 * Join the values of the searched fields for the stored "searchText" index field, which lets search results be
+	 * matched against a longer query without going back to the index. Null values are skipped.
+	 *
+	 * @param values
+	 *            the field values.
+	 * @return the values, one per line.
+	 */
+	static String joinSearchText(Object... values) {
+		StringJoiner joiner = new StringJoiner("\n");
+		for (Object value : values) {
+			if (value != null) {
+				joiner.add(value.toString());
+			}
+		}
+		return joiner.toString();
+	}
+
+	/**
+	 * Get the key that names are sorted and matched on: the name in lower case, or the empty string if there is none.
+	 * Authors and borrowers store the keys of their names, so that the database can sort them and find them by prefix
+	 * with an index.
+	 *
+	 * @param name
+	 *            the last or first name, which may be null.
+	 * @return the sort key.
+	 */
+	static String nameSortKey(String name) {
+		return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+	}
 }
@@ -16,6 +16,7 @@
 package org.kathrynhuxtable.books.persistence.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedSet;
@@ -34,20 +35,48 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderColumn;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.ngram.EdgeNGramFilterFactory;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.SortComparator;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.Analyzer;
+import org.hibernate.search.annotations.ContainedIn;
+import org.hibernate.search.annotations.AnalyzerDef;
+import org.hibernate.search.annotations.AnalyzerDefs;
+import org.hibernate.search.annotations.Facet;
 import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.Parameter;
+import org.hibernate.search.annotations.SortableField;
 import org.hibernate.search.annotations.Store;
+import org.hibernate.search.annotations.TokenFilterDef;
+import org.hibernate.search.annotations.TokenizerDef;
 import org.kathrynhuxtable.books.persistence.domain.converter.BooleanToYNConverter;
 import org.kathrynhuxtable.books.service.DocumentType;
 import org.kathrynhuxtable.books.service.TitlePropertyComparator;
 
 @Entity
 @Indexed
-@Table(schema = "APP", name = "ENTRIES")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(schema = "APP", name = "ENTRIES", indexes = { @javax.persistence.Index(name = "ENTRIES_LAST_MODIFIED", columnList = "LAST_MODIFIED"),
+		@javax.persistence.Index(name = "ENTRIES_SORT_TITLE", columnList = "SORT_TITLE, ENTRY_ID") })
+// Analyzer definitions are global, and are used by the prefix fields of all the entities.
+@AnalyzerDefs({
+		@AnalyzerDef(name = DomainObject.PREFIX_ANALYZER, tokenizer = @TokenizerDef(factory = StandardTokenizerFactory.class), filters = {
+				@TokenFilterDef(factory = LowerCaseFilterFactory.class),
+				@TokenFilterDef(factory = EdgeNGramFilterFactory.class, params = { @Parameter(name = "minGramSize", value = "1"),
+						@Parameter(name = "maxGramSize", value = "" + DomainObject.PREFIX_MAX_LENGTH) }) }),
+		@AnalyzerDef(name = DomainObject.PREFIX_QUERY_ANALYZER, tokenizer = @TokenizerDef(factory = StandardTokenizerFactory.class), filters = {
+				@TokenFilterDef(factory = LowerCaseFilterFactory.class) }) })
 public class Title implements DomainObject, Cloneable, Comparable<Title>, Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -58,12 +87,22 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 	private Long id = new Long(-1);
 
 	private long version;
+	@Column(name = "LAST_MODIFIED")
+	private Instant lastModified;
 	@Field
 	@Field(name = "objectName", store = Store.YES)
+	@Field(name = "objectNamePrefix", analyzer = @Analyzer(definition = PREFIX_ANALYZER))
 	private String title;
+	// The sort key of the title, set when the title is saved.
+	@Column(name = "SORT_TITLE")
+	private String sortTitle;
 	@Field
+	@Field(name = "categoryFacet", analyze = Analyze.NO)
+	@Facet(forField = "categoryFacet")
 	private String category;
 	@Field
+	@Field(name = "formFacet", analyze = Analyze.NO)
+	@Facet(forField = "formFacet")
 	private String form;
 	@Field
 	private int publicationYear;
@@ -73,11 +112,13 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 	@Field
 	private String note;
 
+	// Not cached: Author.titles maps the same join table, and changes made through it wouldn't evict this side.
 	@ManyToMany
 	@JoinTable(name = "ENTRY_AUTHORS", joinColumns = { @JoinColumn(name = "ENTRY_ID") }, inverseJoinColumns = { @JoinColumn(name = "AUTHOR_ID") })
 	@OrderColumn(name = "SEQUENCE")
 	private List<Author> authors = new ArrayList<Author>();
 
+	// Not cached: contents maps the same join table, and changes made through it wouldn't evict this side.
 	@ManyToMany
 	@JoinTable(name = "CONTENTS", joinColumns = { @JoinColumn(name = "ELEMENT_ID") }, inverseJoinColumns = { @JoinColumn(name = "COLLECTION_ID") })
 	@SortComparator(value = TitlePropertyComparator.TitleComparator.class)
@@ -86,9 +127,13 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 	@ManyToMany
 	@JoinTable(name = "CONTENTS", joinColumns = { @JoinColumn(name = "COLLECTION_ID") }, inverseJoinColumns = { @JoinColumn(name = "ELEMENT_ID") })
 	@OrderColumn(name = "SEQUENCE")
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	private List<Title> contents = new ArrayList<Title>();
 
+	// Volume documents embed their title, so they are reindexed when it changes.
+	@ContainedIn
 	@OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true, mappedBy = "entry")
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	@SortComparator(value = TitlePropertyComparator.VolumeIdComparator.class)
 	private SortedSet<Volume> volumes = new TreeSet<Volume>();
 
@@ -275,6 +320,36 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 		this.version = version;
 	}
 
+	/**
+	 * @return the time the entity was last saved, or null if it hasn't been saved since the column was added
+	 */
+	public Instant getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @param lastModified
+	 *            the lastModified to set
+	 */
+	public void setLastModified(Instant lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return the sort key of the title, as of when it was last saved.
+	 * @see TitlePropertyComparator#sortKey(String)
+	 */
+	public String getSortTitle() {
+		return sortTitle;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateLastModified() {
+		lastModified = Instant.now();
+		sortTitle = title == null ? "" : TitlePropertyComparator.sortKey(title);
+	}
+
 	public SortedSet<Volume> getVolumes() {
 		return volumes;
 	}
@@ -297,6 +372,7 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 		return title;
 	}
 	
+	@Field(name = "shortDescription", store = Store.YES, index = Index.NO)
 	public String getShortDescription() {
 		StringBuffer result = new StringBuffer();
 		if (getCategory() != null && !getCategory().isEmpty()) {
@@ -323,6 +399,17 @@ public class Title implements DomainObject, Cloneable, Comparable<Title>, Serial
 		return result.toString();
 	}
 
+	@Field(name = "searchText", store = Store.YES, index = Index.NO)
+	public String getSearchText() {
+		return DomainObject.joinSearchText(title, category, form, haveRead, note);
+	}
+
+	@Field(name = TITLE_SORT_FIELD, analyze = Analyze.NO)
+	@SortableField(forField = TITLE_SORT_FIELD)
+	public String getTitleSortKey() {
+		return TitlePropertyComparator.sortKey(title);
+	}
+
 	public boolean equals(Object o) {
 		if (o == null || !(o instanceof Title)) {
 			return false;
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.domain;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+/**
+ * One of the trigrams of a title, which let the titles containing some text be found with an index instead of by
+ * reading every title.
+ * <p>
+ * The trigrams of a title are the substrings of its lower case text of three characters starting at each position,
+ * and the shorter substrings at its end, so every substring of the title of any length starts some trigram. A title
+ * with no text has the empty trigram, so that every title has at least one. They are written by
+ * {@link org.kathrynhuxtable.books.persistence.util.TitleTrigramListener} whenever a title is saved.
+ */
+@Entity
+@IdClass(TitleTrigram.Key.class)
+@Table(schema = "APP", name = "ENTRY_TRIGRAMS", indexes = @javax.persistence.Index(name = "ENTRY_TRIGRAMS_GRAM", columnList = "GRAM, ENTRY_ID"))
+public class TitleTrigram implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The length of a trigram. */
+	public static final int LENGTH = 3;
+
+	@Id
+	@Column(name = "ENTRY_ID")
+	private Long entryId;
+	@Id
+	@Column(name = "GRAM", length = LENGTH)
+	private String gram;
+
+	public Long getEntryId() {
+		return entryId;
+	}
+
+	public String getGram() {
+		return gram;
+	}
+
+	/**
+	 * Get the trigrams of a title.
+	 *
+	 * @param title
+	 *            the title, which may be null.
+	 * @return the distinct trigrams.
+	 */
+	public static Set<String> of(String title) {
+		String text = title == null ? "" : title.toLowerCase(Locale.ROOT);
+		Set<String> grams = new HashSet<>();
+		for (int i = 0; i < text.length(); i++) {
+			grams.add(text.substring(i, Math.min(i + LENGTH, text.length())));
+		}
+		if (grams.isEmpty()) {
+			grams.add("");
+		}
+		return grams;
+	}
+
+	public static class Key implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private Long entryId;
+		private String gram;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return Objects.equals(entryId, other.entryId) && Objects.equals(gram, other.gram);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(entryId, gram);
+		}
+	}
+}
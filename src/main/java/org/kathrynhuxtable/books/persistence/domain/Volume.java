@@ -16,6 +16,7 @@
 package org.kathrynhuxtable.books.persistence.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -25,18 +26,29 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.Analyzer;
+import org.hibernate.search.annotations.Facet;
 import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.IndexedEmbedded;
+import org.hibernate.search.annotations.SortableField;
 import org.hibernate.search.annotations.Store;
 import org.kathrynhuxtable.books.service.DocumentType;
+import org.kathrynhuxtable.books.service.TitlePropertyComparator;
 
 @Entity
 @Indexed
-@Table(schema = "APP", name = "VOLUMES")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(schema = "APP", name = "VOLUMES", indexes = @javax.persistence.Index(name = "VOLUMES_LAST_MODIFIED", columnList = "LAST_MODIFIED"))
 public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -47,9 +59,16 @@ public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Seri
 	private Long id;
 
 	private long version;
+	@Column(name = "LAST_MODIFIED")
+	private Instant lastModified;
 	@Field
+	@Field(name = "bindingFacet", analyze = Analyze.NO)
+	@Facet(forField = "bindingFacet")
 	private String binding;
 	@Field
+	@Field(name = "publisherPrefix", analyzer = @Analyzer(definition = PREFIX_ANALYZER))
+	@Field(name = "publisherFacet", analyze = Analyze.NO)
+	@Facet(forField = "publisherFacet")
 	private String publisher;
 	@Field
 	private String publicationDate;
@@ -116,6 +135,7 @@ public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Seri
 	}
 
 	@Field(store = Store.YES)
+	@Field(name = "objectNamePrefix", analyzer = @Analyzer(definition = PREFIX_ANALYZER))
 	@Transient
 	public String getObjectName() {
 		Title entry = getEntry();
@@ -250,6 +270,27 @@ public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Seri
 		this.version = version;
 	}
 
+	/**
+	 * @return the time the entity was last saved, or null if it hasn't been saved since the column was added
+	 */
+	public Instant getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @param lastModified
+	 *            the lastModified to set
+	 */
+	public void setLastModified(Instant lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateLastModified() {
+		lastModified = Instant.now();
+	}
+
 	/**
 	 * @return
 	 */
@@ -262,6 +303,7 @@ public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Seri
 		return binding + " " + publisher + " " + publicationDate;
 	}
 
+	@Field(name = "shortDescription", store = Store.YES, index = Index.NO)
 	public String getShortDescription() {
 		StringBuffer result = new StringBuffer();
 		if (getBinding() != null && !getBinding().isEmpty()) {
@@ -282,6 +324,17 @@ public class Volume implements DomainObject, Cloneable, Comparable<Volume>, Seri
 		return result.toString();
 	}
 
+	@Field(name = "searchText", store = Store.YES, index = Index.NO)
+	public String getSearchText() {
+		return DomainObject.joinSearchText(getObjectName(), binding, publisher, publicationDate, isbn, libraryOfCongress, note);
+	}
+
+	@Field(name = TITLE_SORT_FIELD, analyze = Analyze.NO)
+	@SortableField(forField = TITLE_SORT_FIELD)
+	public String getTitleSortKey() {
+		return entry == null ? null : TitlePropertyComparator.sortKey(entry.getTitle());
+	}
+
 	public int compareTo(Volume o) {
 		if (o == null) {
 			throw new ClassCastException("Unable to compare Volume with null");
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Constants;
+import org.hibernate.search.spi.BuildContext;
+import org.hibernate.search.store.impl.FSDirectoryProvider;
+import org.hibernate.search.store.spi.DirectoryHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A filesystem directory provider that chooses how each index is read from the size of the index and the address
+ * space of the JVM, unless {@value #ACCESS_TYPE} is set explicitly.
+ * <p>
+ * Memory mapping is fastest, since the operating system caches the index pages and the JVM heap isn't used, but a 32
+ * bit JVM only has a few GB of address space to share between the heap and all the mapped files, so there only small
+ * indexes are mapped.
+ */
+public class AutoDirectoryProvider extends FSDirectoryProvider {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AutoDirectoryProvider.class);
+
+	/** The Hibernate Search property for the way the index is read. */
+	public static final String ACCESS_TYPE = "filesystem_access_type";
+
+	private static final long MAX_MAPPED_SIZE_32_BIT = 256L * 1024 * 1024;
+
+	@Override
+	public void initialize(String directoryProviderName, Properties properties, BuildContext context) {
+		String accessType = properties.getProperty(ACCESS_TYPE, "auto");
+		if ("auto".equalsIgnoreCase(accessType)) {
+			Path indexPath = DirectoryHelper.getVerifiedIndexPath(directoryProviderName, properties, true);
+			long size = getIndexSize(indexPath);
+			accessType = chooseAccessType(size, Constants.JRE_IS_64BIT, MMapDirectory.UNMAP_SUPPORTED, Constants.WINDOWS);
+			LOG.info(String.format("Using %s access for index %s of %,d bytes", accessType, directoryProviderName, size));
+
+			Properties chosen = new Properties(properties);
+			chosen.setProperty(ACCESS_TYPE, accessType);
+			properties = chosen;
+		}
+		super.initialize(directoryProviderName, properties, context);
+	}
+
+	/**
+	 * Choose how to read an index.
+	 *
+	 * @param indexSize
+	 *            the size of the index files in bytes.
+	 * @param is64Bit
+	 *            whether the JVM is 64 bit.
+	 * @param unmapSupported
+	 *            whether mapped files can be unmapped when closed, without which they stay mapped until garbage
+	 *            collected.
+	 * @param windows
+	 *            whether the operating system is Windows, where NIO reads are slow.
+	 * @return the access type, "mmap", "nio" or "simple".
+	 */
+	static String chooseAccessType(long indexSize, boolean is64Bit, boolean unmapSupported, boolean windows) {
+		if (unmapSupported && (is64Bit || indexSize < MAX_MAPPED_SIZE_32_BIT)) {
+			return "mmap";
+		}
+		return windows ? "simple" : "nio";
+	}
+
+	private static long getIndexSize(Path indexPath) {
+		try (Stream<Path> files = Files.list(indexPath)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		} catch (IOException e) {
+			LOG.warn("Unable to measure index " + indexPath, e);
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+
+/**
+ * Records the changes that an index update must catch up on and that the entities' last modified times don't show.
+ * <p>
+ * The deletion of an entity is recorded as a {@link org.kathrynhuxtable.books.persistence.domain.DeletedDocument}. A
+ * change to a many-to-many collection, such as the authors of a title, doesn't update its owner's row, so the last
+ * modified time of the owner is set here, and so is that of each entity added to or removed from the collection, whose
+ * document may show the relation too.
+ * <p>
+ * Both are written with JDBC on the session's connection, since running a query from inside a flush would flush the
+ * session again. The listener is registered with every session factory as an {@link Integrator}, listed in
+ * {@code META-INF/services}.
+ */
+public class ChangeTrackingListener implements Integrator, PostDeleteEventListener, PostCollectionRecreateEventListener,
+		PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String INSERT_DELETED = "insert into APP.DELETED_DOCUMENTS (DOCUMENT_TYPE, ENTITY_ID, DELETED) values (?, ?, ?)";
+
+	private static final String LAST_MODIFIED_PROPERTY = "lastModified";
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_DELETE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof DomainObject) {
+			DomainObject object = (DomainObject) event.getEntity();
+			Serializable id = event.getId();
+			event.getSession().doWork(connection -> {
+				try (PreparedStatement insert = connection.prepareStatement(INSERT_DELETED)) {
+					insert.setString(1, object.getDocumentType().name());
+					insert.setLong(2, (Long) id);
+					insert.setTimestamp(3, Timestamp.from(Instant.now()));
+					insert.executeUpdate();
+				}
+			});
+		}
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		touch(event);
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		touch(event);
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		touch(event);
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	/**
+	 * @deprecated replaced by {@link #requiresPostCommitHandling(EntityPersister)}, but still abstract in this version
+	 *             of Hibernate.
+	 */
+	@Deprecated
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return requiresPostCommitHandling(persister);
+	}
+
+	/**
+	 * Set the last modified time of the owner of a changed many-to-many collection, and of the entities it held before
+	 * or holds now. Other collections are the inverse of a reference that is saved with the entity holding it.
+	 */
+	private void touch(AbstractCollectionEvent event) {
+		PersistentCollection collection = event.getCollection();
+		CollectionPersister collectionPersister = persisterOf(event);
+		if (!(event.getAffectedOwnerOrNull() instanceof DomainObject) || collectionPersister == null || !collectionPersister.isManyToMany()) {
+			return;
+		}
+
+		Map<String, DomainObject> touched = new LinkedHashMap<>();
+		addEntity(event.getAffectedOwnerOrNull(), touched);
+		if (collection.wasInitialized() && collection instanceof Collection) {
+			((Collection<?>) collection).forEach(element -> addEntity(element, touched));
+		}
+		Serializable snapshot = collection.getStoredSnapshot();
+		if (snapshot instanceof Map) {
+			((Map<?, ?>) snapshot).values().forEach(element -> addEntity(element, touched));
+		} else if (snapshot instanceof Collection) {
+			((Collection<?>) snapshot).forEach(element -> addEntity(element, touched));
+		}
+
+		// One statement for each table.
+		Map<AbstractEntityPersister, List<Long>> ids = new HashMap<>();
+		for (DomainObject entity : touched.values()) {
+			EntityPersister persister = event.getSession().getEntityPersister(null, entity);
+			if (persister instanceof AbstractEntityPersister && entity.getId() != null) {
+				ids.computeIfAbsent((AbstractEntityPersister) persister, p -> new ArrayList<>()).add(entity.getId());
+			}
+		}
+		Timestamp now = Timestamp.from(Instant.now());
+		event.getSession().doWork(connection -> {
+			for (Map.Entry<AbstractEntityPersister, List<Long>> entry : ids.entrySet()) {
+				updateLastModified(connection, entry.getKey(), entry.getValue(), now);
+			}
+		});
+	}
+
+	/**
+	 * Get the persister of a changed collection. A collection saved for the first time only gets its role once the
+	 * flush is finished, so it is taken from the collection's entry in the persistence context.
+	 */
+	private static CollectionPersister persisterOf(AbstractCollectionEvent event) {
+		CollectionEntry entry = event.getSession().getPersistenceContext().getCollectionEntry(event.getCollection());
+		if (entry != null && entry.getCurrentPersister() != null) {
+			return entry.getCurrentPersister();
+		}
+		String role = event.getCollection().getRole();
+		return role == null ? null : event.getSession().getFactory().getMetamodel().collectionPersister(role);
+	}
+
+	private static void addEntity(Object element, Map<String, DomainObject> touched) {
+		if (element instanceof DomainObject) {
+			DomainObject entity = (DomainObject) element;
+			touched.putIfAbsent(entity.getDocumentType() + ":" + entity.getId(), entity);
+		}
+	}
+
+	private static void updateLastModified(Connection connection, AbstractEntityPersister persister, List<Long> ids,
+			Timestamp now) throws SQLException {
+		String sql = "update " + persister.getTableName() + " set " + persister.getPropertyColumnNames(LAST_MODIFIED_PROPERTY)[0]
+				+ " = ? where " + persister.getIdentifierColumnNames()[0] + " = ?";
+		try (PreparedStatement update = connection.prepareStatement(sql)) {
+			for (Long id : ids) {
+				update.setTimestamp(1, now);
+				update.setLong(2, id);
+				update.addBatch();
+			}
+			update.executeBatch();
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.boot.Metadata;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reindexes the authors whose number of titles changes, which Hibernate Search doesn't do by itself, and counts the
+ * volumes reindexed for changed titles, which it does.
+ * <p>
+ * A volume document embeds the fields of its title, and Hibernate Search reindexes the volumes of a changed title
+ * through the {@code @ContainedIn} on {@link Title#getVolumes()}. The titles updated in a flush are collected, so that
+ * their volumes can be counted once the flush is finished. An author document shows how many titles the author
+ * has, which isn't an embedded field, and an author removed from a title is no longer reachable from it. So while a
+ * session flushes, the authors added to or removed from titles are collected here; when the flush is finished, they
+ * are loaded with one query and added to the transaction's indexing work. Hibernate Search merges that work with the
+ * rest of the transaction's, and applies it to the indexes as one batch when the transaction commits.
+ * <p>
+ * The listener is registered with every session factory as an {@link Integrator}, listed in {@code META-INF/services}.
+ * It counts the cascaded work of volumes and authors, so that the cost of a save can be seen in the log at debug
+ * level, and in a summary when the session factory is closed.
+ */
+public class DependentIndexListener implements Integrator, PostUpdateEventListener, PostCollectionRecreateEventListener,
+		PostCollectionUpdateEventListener, PostCollectionRemoveEventListener, FlushEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(DependentIndexListener.class);
+
+	// Properties that change on every save but aren't part of any document.
+	private static final Set<String> UNINDEXED_PROPERTIES = new HashSet<>(Arrays.asList("lastModified", "sortTitle"));
+
+	private static final String TITLE_AUTHORS_ROLE = Title.class.getName() + ".authors";
+
+	// The changes collected in each session since its last flush finished.
+	private final transient Map<SessionImplementor, Pending> pending = new ConcurrentHashMap<>();
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong changedTitles = new AtomicLong();
+	private final AtomicLong reindexedVolumes = new AtomicLong();
+	private final AtomicLong reindexedAuthors = new AtomicLong();
+	private final AtomicLong largestBatch = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private static class Pending {
+		private final Map<Long, Title> titles = new HashMap<>();
+		private final Set<Long> authorIds = new HashSet<>();
+	}
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+		// After the default listener, so that the flush has happened. The indexing work is prepared when the
+		// transaction completes, which is after the last flush.
+		registry.appendListeners(EventType.FLUSH, this);
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		if (batches.get() > 0) {
+			LOG.info(getSummary());
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Title && changesIndexedProperty(event)) {
+			pendingFor(event.getSession()).titles.put(((Title) event.getEntity()).getId(), (Title) event.getEntity());
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	/**
+	 * @deprecated replaced by {@link #requiresPostCommitHandling(EntityPersister)}, but still abstract in this version
+	 *             of Hibernate.
+	 */
+	@Deprecated
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return requiresPostCommitHandling(persister);
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		collectAuthors(event);
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		collectAuthors(event);
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		collectAuthors(event);
+	}
+
+	@Override
+	public void onFlush(FlushEvent event) throws HibernateException {
+		Pending changes = pending.remove(event.getSession());
+		if (changes == null || changes.titles.isEmpty() && changes.authorIds.isEmpty()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		// Hibernate Search loads the same collections to reindex the volumes when the transaction completes, and
+		// Title.volumes is cached, so counting them here costs little.
+		int volumes = 0;
+		for (Title title : changes.titles.values()) {
+			volumes += title.getVolumes().size();
+		}
+		int authors = 0;
+		if (!changes.authorIds.isEmpty()) {
+			FullTextSession fullTextSession = Search.getFullTextSession(event.getSession());
+			List<Author> dependents = fullTextSession.createQuery("select a from Author a where a.id in :ids", Author.class)
+					.setParameter("ids", changes.authorIds).getResultList();
+			for (Author author : dependents) {
+				fullTextSession.index(author);
+			}
+			authors = dependents.size();
+		}
+		long nanos = System.nanoTime() - start;
+
+		batches.incrementAndGet();
+		changedTitles.addAndGet(changes.titles.size());
+		reindexedVolumes.addAndGet(volumes);
+		reindexedAuthors.addAndGet(authors);
+		largestBatch.accumulateAndGet(volumes + authors, Math::max);
+		totalNanos.addAndGet(nanos);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(String.format("Reindexing %d volumes and %d authors for %d changed titles took %.1f ms", volumes, authors,
+					changes.titles.size(), nanos / 1e6));
+		}
+	}
+
+	/**
+	 * @return the number of flushes that reindexed dependent documents.
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of changed titles whose volumes were reindexed.
+	 */
+	public long getChangedTitles() {
+		return changedTitles.get();
+	}
+
+	public long getReindexedVolumes() {
+		return reindexedVolumes.get();
+	}
+
+	public long getReindexedAuthors() {
+		return reindexedAuthors.get();
+	}
+
+	/**
+	 * @return the largest number of dependent documents reindexed by one flush.
+	 */
+	public long getLargestBatch() {
+		return largestBatch.get();
+	}
+
+	/**
+	 * @return a one line description of the dependent reindexing done so far.
+	 */
+	public String getSummary() {
+		long count = batches.get();
+		return String.format("%d dependent reindexing batches: %d volumes for %d changed titles, %d authors, largest batch %d, %.1f ms average",
+				count, reindexedVolumes.get(), changedTitles.get(), reindexedAuthors.get(), largestBatch.get(),
+				count == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get()) / 1000.0 / count);
+	}
+
+	private Pending pendingFor(SessionImplementor session) {
+		return pending.computeIfAbsent(session, s -> {
+			// A transaction that rolls back without flushing must not leave its changes behind.
+			s.getActionQueue().registerProcess((success, completed) -> pending.remove(completed));
+			return new Pending();
+		});
+	}
+
+	private static boolean changesIndexedProperty(PostUpdateEvent event) {
+		int[] dirty = event.getDirtyProperties();
+		if (dirty == null) {
+			return true;
+		}
+		String[] names = event.getPersister().getPropertyNames();
+		return Arrays.stream(dirty).anyMatch(i -> !UNINDEXED_PROPERTIES.contains(names[i]));
+	}
+
+	/**
+	 * Collect the authors added to or removed from a title.
+	 */
+	private void collectAuthors(AbstractCollectionEvent event) {
+		if (!TITLE_AUTHORS_ROLE.equals(roleOf(event))) {
+			return;
+		}
+		PersistentCollection collection = event.getCollection();
+		Set<Long> authorIds = pendingFor(event.getSession()).authorIds;
+		if (collection.wasInitialized() && collection instanceof Collection) {
+			addAuthorIds((Collection<?>) collection, authorIds);
+		}
+		Serializable snapshot = collection.getStoredSnapshot();
+		if (snapshot instanceof Collection) {
+			addAuthorIds((Collection<?>) snapshot, authorIds);
+		}
+	}
+
+	/**
+	 * Get the role of a changed collection. A collection saved for the first time only gets its role once the flush is
+	 * finished, so it is taken from the collection's entry in the persistence context.
+	 */
+	private static String roleOf(AbstractCollectionEvent event) {
+		CollectionEntry entry = event.getSession().getPersistenceContext().getCollectionEntry(event.getCollection());
+		if (entry != null && entry.getCurrentPersister() != null) {
+			return entry.getCurrentPersister().getRole();
+		}
+		return event.getCollection().getRole();
+	}
+
+	private static void addAuthorIds(Collection<?> authors, Set<Long> authorIds) {
+		for (Object author : authors) {
+			if (author instanceof Author) {
+				authorIds.add(((Author) author).getId());
+			}
+		}
+	}
+}
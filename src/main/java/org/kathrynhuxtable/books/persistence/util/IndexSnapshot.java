@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A point-in-time view of the indexes, which keeps serving searches while the indexes themselves are purged and
+ * rebuilt.
+ * <p>
+ * A Lucene index reader only sees the index as it was when the reader was opened, and the index files it uses are kept
+ * until it is closed, however the index changes in the meantime. Closing the snapshot releases them, and Lucene deletes
+ * the files of the old index generation at its next commit.
+ */
+public class IndexSnapshot implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IndexSnapshot.class);
+
+	private final IndexReaderAccessor accessor;
+	private final IndexReader reader;
+
+	private IndexSnapshot(IndexReaderAccessor accessor, IndexReader reader) {
+		this.accessor = accessor;
+		this.reader = reader;
+	}
+
+	/**
+	 * Take a snapshot of the current indexes of some entities.
+	 *
+	 * @param searchFactory
+	 *            the search factory.
+	 * @param classes
+	 *            the indexed entity classes.
+	 * @return the snapshot.
+	 */
+	public static IndexSnapshot open(SearchFactory searchFactory, Class<?>... classes) {
+		IndexReaderAccessor accessor = searchFactory.getIndexReaderAccessor();
+		return new IndexSnapshot(accessor, accessor.open(classes));
+	}
+
+	/**
+	 * Search the snapshot.
+	 *
+	 * @param query
+	 *            the query, which must restrict the hits to the wanted entity classes itself.
+	 * @param sort
+	 *            the sort order, or null for relevance order.
+	 * @param offset
+	 *            the number of hits to skip.
+	 * @param limit
+	 *            the maximum number of hits to return.
+	 * @param mapper
+	 *            converts the stored fields of a hit into a result.
+	 * @return the results, or null if the snapshot has been closed or can't be read, in which case search the indexes
+	 *         instead.
+	 */
+	public <T> List<T> search(Query query, Sort sort, int offset, int limit, Function<Document, T> mapper) {
+		if (!reader.tryIncRef()) {
+			return null;
+		}
+		try {
+			List<T> results = new ArrayList<>();
+			if (limit <= 0) {
+				return results;
+			}
+			IndexSearcher searcher = new IndexSearcher(reader);
+			TopDocs topDocs = sort == null ? searcher.search(query, offset + limit) : searcher.search(query, offset + limit, sort);
+			for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+				results.add(mapper.apply(searcher.doc(topDocs.scoreDocs[i].doc)));
+			}
+			return results;
+		} catch (IOException e) {
+			LOG.warn("Unable to search index snapshot", e);
+			return null;
+		} finally {
+			try {
+				reader.decRef();
+			} catch (IOException e) {
+				LOG.warn("Unable to release index snapshot", e);
+			}
+		}
+	}
+
+	/**
+	 * Release the snapshot. Searches still running on it finish first.
+	 */
+	@Override
+	public void close() {
+		accessor.close(reader);
+	}
+}
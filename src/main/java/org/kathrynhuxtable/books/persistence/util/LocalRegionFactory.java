@@ -0,0 +1,134 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+/**
+ * A second-level cache kept on the heap, for an application with a single JVM using the database. Each entity,
+ * collection and query results region holds up to the number of entries set by {@value #MAX_ENTRIES_SETTING}, by
+ * default {@value #DEFAULT_MAX_ENTRIES}, and drops the least recently used entry when it is full.
+ * <p>
+ * The update timestamps aren't bounded: there is one for each table, and dropping one would let stale query results be
+ * served.
+ */
+public class LocalRegionFactory extends RegionFactoryTemplate {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String MAX_ENTRIES_SETTING = "hibernate.cache.local.max_entries";
+
+	private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	@Override
+	protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+		maxEntries = ConfigurationHelper.getInt(MAX_ENTRIES_SETTING, configValues, DEFAULT_MAX_ENTRIES);
+	}
+
+	@Override
+	protected void releaseFromUse() {
+	}
+
+	@Override
+	public AccessType getDefaultAccessType() {
+		return AccessType.READ_WRITE;
+	}
+
+	@Override
+	protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+			DomainDataRegionBuildingContext buildingContext) {
+		return new MapStorageAccess(lruMap(maxEntries));
+	}
+
+	@Override
+	protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+		return new MapStorageAccess(lruMap(maxEntries));
+	}
+
+	@Override
+	protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+		return new MapStorageAccess(new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Make a synchronized map in access order, which drops its least recently used entry when it grows past the
+	 * maximum.
+	 */
+	static Map<Object, Object> lruMap(int maxEntries) {
+		return Collections.synchronizedMap(new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	private static class MapStorageAccess implements DomainDataStorageAccess {
+		private final Map<Object, Object> map;
+
+		MapStorageAccess(Map<Object, Object> map) {
+			this.map = map;
+		}
+
+		@Override
+		public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+			return map.get(key);
+		}
+
+		@Override
+		public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+			map.put(key, value);
+		}
+
+		@Override
+		public boolean contains(Object key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public void evictData() {
+			map.clear();
+		}
+
+		@Override
+		public void evictData(Object key) {
+			map.remove(key);
+		}
+
+		@Override
+		public void release() {
+			map.clear();
+		}
+	}
+}
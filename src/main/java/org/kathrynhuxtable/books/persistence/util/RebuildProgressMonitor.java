@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.kathrynhuxtable.books.service.DocumentType;
+import org.kathrynhuxtable.books.service.IndexRebuildProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the progress of the mass indexers rebuilding each document type's index, and reports it to a listener.
+ * <p>
+ * Hibernate Search doesn't tell a progress monitor which type a document belongs to, so each type is indexed by its own
+ * mass indexer with the monitor from {@link #monitorFor(DocumentType)}. Reports are sent at most every
+ * {@value #REPORT_INTERVAL_MILLIS} ms, and once more when the rebuild is complete, on whichever indexer thread made the
+ * progress. None is sent after the final one.
+ */
+public class RebuildProgressMonitor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RebuildProgressMonitor.class);
+
+	private static final long REPORT_INTERVAL_MILLIS = 250;
+
+	private final Consumer<IndexRebuildProgress> listener;
+	private final Map<DocumentType, Long> totals = new EnumMap<>(DocumentType.class);
+	private final Map<DocumentType, Long> indexed = new EnumMap<>(DocumentType.class);
+	private final long startTime = System.nanoTime();
+	private long lastReport = 0;
+
+	// Reports are sent one at a time under this lock, and none after the final one.
+	private final Object reportLock = new Object();
+	private boolean reportedComplete = false;
+
+	/**
+	 * Create a monitor.
+	 *
+	 * @param listener
+	 *            receives the progress reports, or null for none.
+	 */
+	public RebuildProgressMonitor(Consumer<IndexRebuildProgress> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Get a progress monitor for the mass indexer of one document type.
+	 *
+	 * @param documentType
+	 *            the document type.
+	 * @return the progress monitor.
+	 */
+	public MassIndexerProgressMonitor monitorFor(DocumentType documentType) {
+		synchronized (this) {
+			totals.put(documentType, 0L);
+			indexed.put(documentType, 0L);
+		}
+		return new MassIndexerProgressMonitor() {
+			@Override
+			public void addToTotalCount(long count) {
+				synchronized (RebuildProgressMonitor.this) {
+					totals.merge(documentType, count, Long::sum);
+				}
+			}
+
+			@Override
+			public void documentsAdded(long increment) {
+				IndexRebuildProgress progress;
+				synchronized (RebuildProgressMonitor.this) {
+					indexed.merge(documentType, increment, Long::sum);
+					long now = System.nanoTime();
+					if (now - lastReport < TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MILLIS)) {
+						return;
+					}
+					lastReport = now;
+					progress = snapshot(false);
+				}
+				report(progress);
+			}
+
+			@Override
+			public void documentsBuilt(int number) {
+			}
+
+			@Override
+			public void entitiesLoaded(int size) {
+			}
+
+			@Override
+			public void indexingCompleted() {
+				long count;
+				synchronized (RebuildProgressMonitor.this) {
+					count = indexed.get(documentType);
+				}
+				LOG.info("Indexed " + count + " " + documentType.getPluralDisplayName());
+			}
+		};
+	}
+
+	/**
+	 * Report that all the document types have been indexed.
+	 */
+	public void complete() {
+		IndexRebuildProgress progress;
+		synchronized (this) {
+			progress = snapshot(true);
+		}
+		LOG.info(String.format("Rebuilt indexes at %,.0f documents/s", progress.getDocumentsPerSecond()));
+		report(progress);
+	}
+
+	private IndexRebuildProgress snapshot(boolean complete) {
+		long done = indexed.values().stream().mapToLong(Long::longValue).sum();
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		return new IndexRebuildProgress(new EnumMap<>(totals), new EnumMap<>(indexed), seconds > 0.0 ? done / seconds : 0.0, complete);
+	}
+
+	/**
+	 * Send a report, unless the final report has been sent already. A report taken by an indexer thread just before the
+	 * rebuild completed may otherwise reach the listener after the final one.
+	 */
+	private void report(IndexRebuildProgress progress) {
+		synchronized (reportLock) {
+			if (reportedComplete) {
+				return;
+			}
+			reportedComplete = progress.isComplete();
+			if (listener != null) {
+				listener.accept(progress);
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.persistence.util;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.TitleTrigram;
+
+/**
+ * Keeps the trigrams of each title in step with its text, in the same transaction as the title is saved.
+ * <p>
+ * The trigrams are written with JDBC on the session's connection, since running a query from inside a flush would
+ * flush the session again. The listener is registered with every session factory as an {@link Integrator}, listed in
+ * {@code META-INF/services}, so that no title can be saved without its trigrams.
+ */
+public class TitleTrigramListener implements Integrator, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String DELETE = "delete from APP.ENTRY_TRIGRAMS where ENTRY_ID = ?";
+	private static final String INSERT = "insert into APP.ENTRY_TRIGRAMS (ENTRY_ID, GRAM) values (?, ?)";
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Title) {
+			Title title = (Title) event.getEntity();
+			event.getSession().doWork(connection -> writeTrigrams(connection, title.getId(), title.getTitle()));
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Title && changesTitle(event)) {
+			Title title = (Title) event.getEntity();
+			event.getSession().doWork(connection -> {
+				deleteTrigrams(connection, title.getId());
+				writeTrigrams(connection, title.getId(), title.getTitle());
+			});
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Title) {
+			Serializable id = event.getId();
+			event.getSession().doWork(connection -> deleteTrigrams(connection, (Long) id));
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	/**
+	 * @deprecated replaced by {@link #requiresPostCommitHandling(EntityPersister)}, but still abstract in this version
+	 *             of Hibernate.
+	 */
+	@Deprecated
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return requiresPostCommitHandling(persister);
+	}
+
+	/**
+	 * Write the trigrams of a title that has none.
+	 *
+	 * @param connection
+	 *            the connection of the transaction saving the title.
+	 * @param id
+	 *            the title's id.
+	 * @param title
+	 *            the title's text.
+	 * @throws SQLException
+	 *             if they can't be written.
+	 */
+	public static void writeTrigrams(Connection connection, Long id, String title) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+			for (String gram : TitleTrigram.of(title)) {
+				insert.setLong(1, id);
+				insert.setString(2, gram);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		}
+	}
+
+	private static void deleteTrigrams(Connection connection, Long id) throws SQLException {
+		try (PreparedStatement delete = connection.prepareStatement(DELETE)) {
+			delete.setLong(1, id);
+			delete.executeUpdate();
+		}
+	}
+
+	private static boolean changesTitle(PostUpdateEvent event) {
+		int[] dirty = event.getDirtyProperties();
+		if (dirty == null) {
+			return true;
+		}
+		int title = Arrays.asList(event.getPersister().getPropertyNames()).indexOf("title");
+		return Arrays.stream(dirty).anyMatch(i -> i == title);
+	}
+}
@@ -16,12 +16,25 @@
 package org.kathrynhuxtable.books.service;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.kathrynhuxtable.books.YAMLConfig;
 import org.kathrynhuxtable.books.persistence.dao.AuthorDAO;
 import org.kathrynhuxtable.books.persistence.dao.BorrowerDAO;
 import org.kathrynhuxtable.books.persistence.dao.SearchDAO;
@@ -32,13 +45,21 @@ import org.kathrynhuxtable.books.persistence.domain.Borrower;
 import org.kathrynhuxtable.books.persistence.domain.DomainObject;
 import org.kathrynhuxtable.books.persistence.domain.Title;
 import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.support.MutableSortDefinition;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 @Service
 public class BooksService {
 
+	private static final Logger LOG = LoggerFactory.getLogger(BooksService.class);
+
+	private static final String[] WARM_UP_QUERIES = { "a", "e", "m", "s", "th" };
+
+	@Autowired
+	private YAMLConfig config;
 	@Autowired
 	private AuthorDAO authorDao;
 	@Autowired
@@ -49,93 +70,373 @@ public class BooksService {
 	private BorrowerDAO borrowerDao;
 	@Autowired
 	private SearchDAO searchDao;
+	@Autowired
+	private SearchResultCache searchCache;
+	@Autowired
+	private NameSuggester nameSuggester;
+	@Autowired
+	private IndexMaintenance indexMaintenance;
+
+	private ExecutorService searchExecutor;
+
+	@PostConstruct
+	public void startSearchExecutor() {
+		int threads = Math.max(1, config.getSearchThreads());
+		// Bounded queue. If it fills up, the searching thread runs the search itself.
+		searchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * DocumentType.values().length),
+				runnable -> {
+					Thread thread = new Thread(runnable, "search-worker");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	@PreDestroy
+	public void stopSearchExecutor() {
+		searchExecutor.shutdownNow();
+	}
 
 	public Optional<Author> getAuthorById(Long id) {
-		return authorDao.findById(id);
+		return authorDao.findPageById(id);
 	}
 
 	public List<Author> findAuthorByName(String name, boolean fetchFields) {
 		return authorDao.findByName(name, fetchFields);
 	}
 
+	/**
+	 * Get the next slice of the authors whose names start with the given name, with their titles.
+	 */
+	public Slice<Author> findAuthorByName(String name, Author after, int size) {
+		return authorDao.findByName(name, after, size, true);
+	}
+
 	public Optional<Title> getTitleById(Long id) {
-		return titleDao.findById(id);
+		return titleDao.findPageById(id);
 	}
 
 	public List<Title> findTitleByName(String title) {
 		return titleDao.findByTitle(title);
 	}
 
+	/**
+	 * Get the next slice of the titles that contain the given text.
+	 */
+	public Slice<Title> findTitleByName(String title, Title after, int size) {
+		return titleDao.findByTitle(title, after, size);
+	}
+
 	public Optional<Volume> getVolumeById(Long id) {
-		return volumeDao.findById(id);
+		return volumeDao.findPageById(id);
 	}
 
+	/**
+	 * Find the volumes whose titles contain the given text, with their titles, which their names are made from.
+	 */
 	public List<Volume> findVolumeByName(String title) {
-		return volumeDao.findByTitle(title, false);
+		return volumeDao.findByTitle(title, true);
+	}
+
+	/**
+	 * Get the next slice of the volumes whose titles contain the given text.
+	 */
+	public Slice<Volume> findVolumeByName(String title, Volume after, int size) {
+		return volumeDao.findByTitle(title, after, size);
 	}
 
 	public Optional<Borrower> getBorrowerById(Long id) {
-		return borrowerDao.findById(id);
+		return borrowerDao.findPageById(id);
 	}
 
 	public List<Borrower> findCheckOutByName(String name, boolean fetchFields) {
 		return borrowerDao.findByName(name, fetchFields);
 	}
 
-	public Map<DocumentType, List<SearchResult>> searchAll(String searchField) {
+	/**
+	 * Get the next slice of the borrowers whose names start with the given name.
+	 */
+	public Slice<Borrower> findCheckOutByName(String name, Borrower after, int size) {
+		return borrowerDao.findByName(name, after, size, false);
+	}
+
+	/**
+	 * Suggest author names, titles and borrower names for the text typed so far, without searching the indexes.
+	 *
+	 * @param query
+	 *            the text typed so far.
+	 * @return the suggestions, best first.
+	 */
+	public List<SearchResult> suggest(String query) {
+		return nameSuggester.suggest(query);
+	}
+
+	public SearchResultPage searchAll(String searchField) {
+		return searchAll(searchField, 0, config.getSearchPageSize());
+	}
+
+	/**
+	 * Search all document types.
+	 *
+	 * @param searchField
+	 *            the query.
+	 * @param offset
+	 *            the number of hits to skip for each document type.
+	 * @param limit
+	 *            the maximum number of hits to return for each document type.
+	 * @return the page of results.
+	 */
+	public SearchResultPage searchAll(String searchField, int offset, int limit) {
+		indexMaintenance.recordActivity();
+		searchField = SearchResultCache.normalize(searchField);
+		if (offset == 0) {
+			SearchResultPage page = searchCache.get(searchField, limit);
+			if (page == null) {
+				long generation = searchCache.getGeneration();
+				page = searchAllUncached(searchField, offset, limit);
+				searchCache.put(page, generation);
+			}
+			return page;
+		}
+		return searchAllUncached(searchField, offset, limit);
+	}
+
+	private SearchResultPage searchAllUncached(String searchField, int offset, int limit) {
+		if (config.isSearchUnified()) {
+			return searchAllUnified(searchField, offset, limit);
+		}
+
+		// Ask for one extra hit per type to find out whether there is another page.
+		Map<DocumentType, List<SearchResult>> map;
+		if (config.isSearchParallel()) {
+			map = searchAllParallel(searchField, offset, limit + 1);
+		} else {
+			map = new TreeMap<>();
+			for (DocumentType documentType : DocumentType.values()) {
+				List<SearchResult> responses = search(documentType, searchField, offset, limit + 1);
+				if (responses.size() > 0) {
+					map.put(documentType, responses);
+				}
+			}
+		}
+
+		boolean more = false;
+		for (Map.Entry<DocumentType, List<SearchResult>> entry : map.entrySet()) {
+			if (entry.getValue().size() > limit) {
+				more = true;
+				entry.setValue(new ArrayList<>(entry.getValue().subList(0, limit)));
+			}
+		}
+		return new SearchResultPage(searchField, map, offset, limit, more);
+	}
+
+	/**
+	 * Search all document types with one query ranked by relevance. The offset and limit count hits of all types
+	 * together.
+	 */
+	private SearchResultPage searchAllUnified(String searchField, int offset, int limit) {
+		// Ask for one extra hit to find out whether there is another page.
+		List<SearchResult> hits = searchDao.searchAllResults(searchField, offset, limit + 1);
+		boolean more = hits.size() > limit;
+		if (more) {
+			hits = hits.subList(0, limit);
+		}
+
+		// Group by type, keeping the relevance order within each type.
 		Map<DocumentType, List<SearchResult>> map = new TreeMap<>();
+		hits.forEach(hit -> map.computeIfAbsent(hit.getDocumentType(), k -> new ArrayList<>()).add(hit));
+		return new SearchResultPage(searchField, map, offset, limit, more);
+	}
 
-		List<Author> authors = searchDao.searchAuthors(searchField);
-		if (authors.size() > 0) {
-			List<SearchResult> responses = new ArrayList<>();
-			map.put(DocumentType.AUTHOR, responses);
-			authors.forEach(author -> responses.add(new SearchResult(DocumentType.AUTHOR, author.getName(), author.getId(), author.getShortDescription())));
+	/**
+	 * Run the searches for each document type concurrently. A search that does not finish within the configured timeout
+	 * is left out of the results rather than holding back the others.
+	 */
+	private Map<DocumentType, List<SearchResult>> searchAllParallel(String searchField, int offset, int limit) {
+		Map<DocumentType, Future<List<SearchResult>>> futures = new EnumMap<>(DocumentType.class);
+		for (DocumentType documentType : DocumentType.values()) {
+			futures.put(documentType, searchExecutor.submit(() -> search(documentType, searchField, offset, limit)));
+		}
+		// All searches start together, so a common deadline gives each the same timeout.
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSearchTimeoutMillis());
+		Map<DocumentType, List<SearchResult>> map = new TreeMap<>();
+		for (Map.Entry<DocumentType, Future<List<SearchResult>>> entry : futures.entrySet()) {
+			try {
+				List<SearchResult> responses = entry.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (responses.size() > 0) {
+					map.put(entry.getKey(), responses);
+				}
+			} catch (TimeoutException e) {
+				entry.getValue().cancel(false);
+				LOG.warn("Search of " + entry.getKey().getPluralDisplayName() + " for \"" + searchField + "\" timed out");
+			} catch (ExecutionException e) {
+				LOG.error("Search of " + entry.getKey().getPluralDisplayName() + " for \"" + searchField + "\" failed", e.getCause());
+			} catch (InterruptedException e) {
+				futures.values().forEach(future -> future.cancel(false));
+				Thread.currentThread().interrupt();
+				break;
+			}
 		}
+		return map;
+	}
 
-		List<Title> titles = searchDao.searchTitles(searchField);
-		if (titles.size() > 0) {
-			Collections.sort(titles, new TitlePropertyComparator<Title>(new MutableSortDefinition("title", true, true)));
-			List<SearchResult> responses = new ArrayList<>();
-			map.put(DocumentType.TITLE, responses);
-			titles.forEach(title -> responses.add(new SearchResult(DocumentType.TITLE, title.getTitle(), title.getId(), title.getShortDescription())));
+	private List<SearchResult> search(DocumentType documentType, String searchField, int offset, int limit) {
+		// Titles and volumes come back from the index already sorted by title.
+		if (config.isSearchProjections()) {
+			return searchDao.searchResults(searchField, offset, limit, documentType);
 		}
 
-		List<Volume> volumes = searchDao.searchVolumes(searchField);
-		if (volumes.size() > 0) {
-			Collections.sort(volumes, new TitlePropertyComparator<Volume>(new MutableSortDefinition("entry.title", true, true)));
-			List<SearchResult> responses = new ArrayList<>();
-			map.put(DocumentType.VOLUME, responses);
+		List<SearchResult> responses = new ArrayList<>();
+		switch (documentType) {
+		case AUTHOR:
+			List<Author> authors = searchDao.searchAuthors(searchField, offset, limit);
+			authors.forEach(author -> responses.add(new SearchResult(DocumentType.AUTHOR, author.getName(), author.getId(), author.getShortDescription())));
+			break;
+		case TITLE:
+			List<Title> titles = searchDao.searchTitles(searchField, offset, limit);
+			titles.forEach(title -> responses.add(new SearchResult(DocumentType.TITLE, title.getTitle(), title.getId(), title.getShortDescription())));
+			break;
+		case VOLUME:
+			List<Volume> volumes = searchDao.searchVolumes(searchField, offset, limit);
 			volumes.forEach(
 					volume -> responses.add(new SearchResult(DocumentType.VOLUME, volume.getEntry().getTitle(), volume.getId(), volume.getShortDescription())));
+			break;
+		case BORROWER:
+			List<Borrower> checkOuts = searchDao.searchBorrowers(searchField, offset, limit);
+			checkOuts.forEach(borrower -> responses.add(new SearchResult(DocumentType.BORROWER, borrower.getName(), borrower.getId(), borrower.getDetails())));
+			break;
 		}
+		return responses;
+	}
 
-		List<Borrower> checkOuts = searchDao.searchBorrowers(searchField);
-		if (checkOuts.size() > 0) {
-			List<SearchResult> responses = new ArrayList<>();
-			map.put(DocumentType.BORROWER, responses);
-			checkOuts.forEach(borrower -> responses.add(new SearchResult(DocumentType.BORROWER, borrower.getName(), borrower.getId(), borrower.getDetails())));
+	/**
+	 * Get search ready at startup. The name suggestions are only held in memory, so they are always loaded. If warm-up
+	 * is on, the indexes, database and search code are also made ready for the first search, which would otherwise be
+	 * several times slower than later ones: searches for the usual first keystrokes are run, and their results are left
+	 * in the cache.
+	 */
+	public void warmUp() {
+		try {
+			nameSuggester.rebuild();
+		} catch (RuntimeException e) {
+			LOG.warn("Loading name suggestions failed", e);
+		}
+		if (!config.isSearchWarmUp()) {
+			return;
 		}
+		long start = System.nanoTime();
+		try {
+			searchDao.warmUp();
+			for (String query : WARM_UP_QUERIES) {
+				searchAll(query);
+			}
+			LOG.info("Search warmed up in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		} catch (RuntimeException e) {
+			LOG.warn("Search warm-up failed", e);
+		}
+	}
 
-		return map;
+	/**
+	 * Count the titles by category and form, or the volumes by binding and publisher, optionally with a page of the
+	 * matching documents.
+	 *
+	 * @param documentType
+	 *            the document type, TITLE or VOLUME. Other types have no facets.
+	 * @param query
+	 *            the query, or null or empty to count all documents of the type.
+	 * @param offset
+	 *            the number of hits to skip.
+	 * @param limit
+	 *            the maximum number of hits to return, or zero for the counts alone.
+	 * @return the results and counts.
+	 */
+	public FacetedResults searchFacets(DocumentType documentType, String query, int offset, int limit) {
+		return searchDao.searchFacets(query, offset, limit, documentType);
 	}
 
 	public void rebuildIndexes() {
-		searchDao.rebuildIndexes();
+		rebuildIndexes(null);
+	}
+
+	/**
+	 * Rebuild the search indexes.
+	 *
+	 * @param listener
+	 *            receives progress reports on a background thread, or null for none.
+	 */
+	public void rebuildIndexes(Consumer<IndexRebuildProgress> listener) {
+		searchDao.rebuildIndexes(listener);
+		searchCache.clear();
+		nameSuggester.rebuild();
+	}
+
+	/**
+	 * Update the search indexes with the changes since they were last rebuilt or updated.
+	 *
+	 * @param listener
+	 *            receives progress reports on a background thread if the indexes have to be rebuilt, or null for none.
+	 * @return the number of documents updated, or -1 if the indexes were rebuilt.
+	 */
+	public int updateIndexes(Consumer<IndexRebuildProgress> listener) {
+		int count = searchDao.updateIndexes(listener);
+		searchCache.clear();
+		nameSuggester.rebuild();
+		return count;
+	}
+
+	/**
+	 * Merge the segments of all the indexes, and drop their deleted documents.
+	 *
+	 * @param listener
+	 *            receives the fraction done and a description of the indexes, or null for none.
+	 * @return the statistics of the indexes afterwards.
+	 */
+	public List<IndexStatistics> optimizeIndexes(BiConsumer<Double, String> listener) {
+		return indexMaintenance.optimize(true, listener);
 	}
 
 	@SuppressWarnings("unchecked")
 	public <T extends DomainObject> T save(T t) {
+		T saved;
 		if (t instanceof Author) {
-			return (T) authorDao.save((Author) t);
+			saved = (T) authorDao.save((Author) t);
 		} else if (t instanceof Title) {
-			return (T) titleDao.save((Title) t);
+			saved = (T) titleDao.save((Title) t);
 		} else if (t instanceof Volume) {
-			return (T) volumeDao.save((Volume) t);
+			saved = (T) volumeDao.save((Volume) t);
 		} else if (t instanceof Borrower) {
-			return (T) borrowerDao.save((Borrower) t);
+			saved = (T) borrowerDao.save((Borrower) t);
 		} else {
 			return null;
 		}
+		saved = reload(saved);
+		searchCache.clear();
+		nameSuggester.update(saved);
+		indexMaintenance.recordActivity();
+		return saved;
+	}
+
+	/**
+	 * Reload a saved object with everything its page shows. The object a save returns may refer to other objects that
+	 * haven't been loaded, and can't be once the save's session is closed.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends DomainObject> T reload(T t) {
+		Optional<? extends DomainObject> page;
+		switch (t.getDocumentType()) {
+		case AUTHOR:
+			page = authorDao.findPageById(t.getId());
+			break;
+		case TITLE:
+			page = titleDao.findPageById(t.getId());
+			break;
+		case VOLUME:
+			page = volumeDao.findPageById(t.getId());
+			break;
+		default:
+			page = borrowerDao.findPageById(t.getId());
+			break;
+		}
+		return page.isPresent() ? (T) page.get() : t;
 	}
 
 	public <T extends DomainObject> void delete(T t) {
@@ -148,5 +449,8 @@ public class BooksService {
 		} else if (t instanceof Borrower) {
 			borrowerDao.delete((Borrower) t);
 		}
+		searchCache.clear();
+		nameSuggester.remove(t.getDocumentType(), t.getId());
+		indexMaintenance.recordActivity();
 	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Logs how well the second-level and query caches are doing, so that {@code hibernate.cache.local.max_entries} can be
+ * sized from the hit ratios of a real catalog. Hibernate only counts when {@code hibernate.generate_statistics} is on.
+ */
+@Service
+public class CacheStatistics {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CacheStatistics.class);
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	// The summary last logged, so that an idle application doesn't repeat it.
+	private String lastSummary;
+
+	@Scheduled(initialDelayString = "#{${mcdb.cache.statistics-interval-minutes:30} * 60000}",
+			fixedDelayString = "#{${mcdb.cache.statistics-interval-minutes:30} * 60000}")
+	public void logIfChanged() {
+		String summary = getSummary();
+		if (summary != null && !summary.equals(lastSummary)) {
+			LOG.info(summary);
+			lastSummary = summary;
+		}
+	}
+
+	@PreDestroy
+	public void logOnExit() {
+		logIfChanged();
+	}
+
+	/**
+	 * @return a one line description of the cache hits and misses so far, or null if they aren't counted.
+	 */
+	public String getSummary() {
+		Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+		if (!statistics.isStatisticsEnabled()) {
+			return null;
+		}
+		return String.format("Second-level cache: %s; query cache: %s; %,d statements prepared",
+				describe(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+						statistics.getSecondLevelCachePutCount()),
+				describe(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()),
+				statistics.getPrepareStatementCount());
+	}
+
+	private static String describe(long hits, long misses, long puts) {
+		long lookups = hits + misses;
+		return String.format("%,d hits, %,d misses (%.0f%% hit), %,d puts", hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, puts);
+	}
+}
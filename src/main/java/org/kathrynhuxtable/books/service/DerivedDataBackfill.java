@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.hibernate.Session;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.kathrynhuxtable.books.persistence.util.TitleTrigramListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fills in the sort key columns and title trigrams of rows saved before they were added. They are kept up to date
+ * whenever an entity is saved, so this only has work to do the first time a database is opened by a version that has
+ * them.
+ * <p>
+ * The keys are written with update statements, which don't change the last modified time, so the search indexes
+ * aren't updated for them; the keys aren't indexed.
+ */
+@Service
+public class DerivedDataBackfill {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DerivedDataBackfill.class);
+
+	@Autowired
+	private YAMLConfig config;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@PersistenceContext
+	private EntityManager em;
+
+	@PostConstruct
+	public void fill() {
+		fillSortKeys();
+		fillTrigrams();
+	}
+
+	private void fillSortKeys() {
+		fill("Title", new String[] { "title" }, new String[] { "sortTitle" },
+				title -> title == null ? "" : TitlePropertyComparator.sortKey(title));
+		fill("Author", new String[] { "lastName", "firstName" }, new String[] { "sortLastName", "sortFirstName" },
+				DomainObject::nameSortKey);
+		fill("Borrower", new String[] { "lastName", "firstName" }, new String[] { "sortLastName", "sortFirstName" },
+				DomainObject::nameSortKey);
+	}
+
+	/**
+	 * Write the trigrams of the titles that have none, a batch in each transaction. Every title has at least one.
+	 */
+	private void fillTrigrams() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		int batchSize = Math.max(1, config.getIndexerImportBatchSize());
+		int filled = 0;
+		int count;
+		do {
+			count = transaction.execute(status -> {
+				@SuppressWarnings("unchecked")
+				List<Object[]> rows = em.createQuery("select t.id, t.title from Title t"
+						+ " where not exists (select g.entryId from TitleTrigram g where g.entryId = t.id)").setMaxResults(batchSize).getResultList();
+				em.unwrap(Session.class).doWork(connection -> {
+					for (Object[] row : rows) {
+						TitleTrigramListener.writeTrigrams(connection, (Long) row[0], (String) row[1]);
+					}
+				});
+				return rows.size();
+			});
+			filled += count;
+		} while (count == batchSize);
+
+		if (filled > 0) {
+			LOG.info(String.format("Wrote the trigrams of %,d titles", filled));
+		}
+	}
+
+	/**
+	 * Set the sort keys of the entities that have none, a batch in each transaction.
+	 *
+	 * @param entity
+	 *            the entity name.
+	 * @param properties
+	 *            the properties the keys are made from.
+	 * @param keys
+	 *            the sort key property of each of them.
+	 * @param keyFunction
+	 *            makes the sort key of a property value.
+	 */
+	private void fill(String entity, String[] properties, String[] keys, Function<String, String> keyFunction) {
+		StringBuilder select = new StringBuilder("select e.id");
+		StringBuilder update = new StringBuilder("update " + entity + " e set ");
+		for (int i = 0; i < properties.length; i++) {
+			select.append(", e.").append(properties[i]);
+			update.append(i == 0 ? "" : ", ").append("e.").append(keys[i]).append(" = :key").append(i);
+		}
+		select.append(" from ").append(entity).append(" e where e.").append(keys[0]).append(" is null");
+		update.append(" where e.id = :id");
+
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		int batchSize = Math.max(1, config.getIndexerImportBatchSize());
+		int filled = 0;
+		int count;
+		do {
+			count = transaction.execute(status -> {
+				@SuppressWarnings("unchecked")
+				List<Object[]> rows = em.createQuery(select.toString()).setMaxResults(batchSize).getResultList();
+				Query updateQuery = em.createQuery(update.toString());
+				for (Object[] row : rows) {
+					updateQuery.setParameter("id", row[0]);
+					for (int i = 0; i < properties.length; i++) {
+						updateQuery.setParameter("key" + i, keyFunction.apply((String) row[i + 1]));
+					}
+					updateQuery.executeUpdate();
+				}
+				return rows.size();
+			});
+			filled += count;
+		} while (count == batchSize);
+
+		if (filled > 0) {
+			LOG.info(String.format("Filled in the sort keys of %,d %s rows", filled, entity));
+		}
+	}
+}
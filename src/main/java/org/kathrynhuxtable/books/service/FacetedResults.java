@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of search results for one document type, with the number of hits for each value of the type's facets.
+ */
+public class FacetedResults {
+	private final List<SearchResult> results;
+	private final int totalHits;
+	private final Map<String, Map<String, Integer>> facets;
+
+	public FacetedResults(List<SearchResult> results, int totalHits, Map<String, Map<String, Integer>> facets) {
+		this.results = results;
+		this.totalHits = totalHits;
+		this.facets = facets;
+	}
+
+	/**
+	 * @return the page of results, which is empty if only the counts were asked for.
+	 */
+	public List<SearchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the number of hits on all pages.
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * @return the counts for each facet, by facet name.
+	 */
+	public Map<String, Map<String, Integer>> getFacets() {
+		return facets;
+	}
+
+	/**
+	 * @param facet
+	 *            the facet name, such as "category".
+	 * @return the number of hits for each value of the facet, largest first, or an empty map if the document type
+	 *         doesn't have the facet.
+	 */
+	public Map<String, Integer> getCounts(String facet) {
+		return facets.getOrDefault(facet, Collections.emptyMap());
+	}
+}
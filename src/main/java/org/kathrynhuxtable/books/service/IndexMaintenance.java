@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.dao.SearchDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the indexes compact. Every save adds a segment to an index and leaves the replaced document behind as deleted,
+ * and Lucene's background merges don't catch up with all of it, so queries slow down over months of edits.
+ * <p>
+ * When the application has been idle for {@code mcdb.indexer.maintenance.idle-minutes}, the indexes with too many
+ * segments or deleted documents are merged, one at a time with a pause between them, and the merging stops as soon as
+ * the application is used again. Merging can also be run on demand, which merges all the indexes without pausing.
+ */
+@Service
+public class IndexMaintenance {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IndexMaintenance.class);
+
+	@Autowired
+	private YAMLConfig config;
+	@Autowired
+	private SearchDAO searchDao;
+
+	private volatile long lastActivity = System.nanoTime();
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	/**
+	 * Note that the application is in use, which puts off merging until it has been idle again for a while.
+	 */
+	public void recordActivity() {
+		lastActivity = System.nanoTime();
+	}
+
+	/**
+	 * @return the statistics of the index of each document type.
+	 */
+	public List<IndexStatistics> getStatistics() {
+		List<IndexStatistics> statistics = new ArrayList<>();
+		for (DocumentType documentType : DocumentType.values()) {
+			statistics.add(searchDao.getIndexStatistics(documentType));
+		}
+		return statistics;
+	}
+
+	@Scheduled(initialDelayString = "#{${mcdb.indexer.maintenance.check-interval-minutes:10} * 60000}",
+			fixedDelayString = "#{${mcdb.indexer.maintenance.check-interval-minutes:10} * 60000}")
+	public void maintainWhenIdle() {
+		if (config.isMaintenanceEnabled() && isIdle()) {
+			optimize(false, null);
+		}
+	}
+
+	/**
+	 * Merge the segments of the indexes.
+	 *
+	 * @param all
+	 *            merge every index straight away. Otherwise only the indexes that need it are merged, pausing between
+	 *            them, and merging stops if the application is used.
+	 * @param listener
+	 *            receives the fraction done and a description of the indexes, or null for none.
+	 * @return the statistics of the indexes afterwards.
+	 */
+	public List<IndexStatistics> optimize(boolean all, BiConsumer<Double, String> listener) {
+		if (!running.compareAndSet(false, true)) {
+			LOG.info("Index maintenance is already running");
+			return getStatistics();
+		}
+		try {
+			List<IndexStatistics> before = getStatistics();
+			List<IndexStatistics> after = new ArrayList<>();
+			boolean merged = false;
+			for (IndexStatistics statistics : before) {
+				if (!all && !(needsMerge(statistics) && isIdle() && pause(merged))) {
+					after.add(statistics);
+					continue;
+				}
+				report(listener, (double) after.size() / before.size(), after, before);
+				long start = System.nanoTime();
+				searchDao.optimizeIndex(statistics.getDocumentType());
+				IndexStatistics merge = searchDao.getIndexStatistics(statistics.getDocumentType());
+				LOG.info(String.format("Merged the %s index in %,d ms, from %d segments and %,d KB to %d segments and %,d KB",
+						statistics.getDocumentType().getSingularDisplayName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+						statistics.getSegments(), statistics.getSizeBytes() / 1024, merge.getSegments(), merge.getSizeBytes() / 1024));
+				after.add(merge);
+				merged = true;
+			}
+			report(listener, 1.0, after, before);
+			if (merged) {
+				LOG.info(String.format("Indexes after maintenance:%n%s", summarize(after, before)));
+			}
+			return after;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private boolean needsMerge(IndexStatistics statistics) {
+		return statistics.getSegments() > config.getMaintenanceMaxSegments()
+				|| statistics.getDeletedRatio() > config.getMaintenanceDeletedRatio();
+	}
+
+	private boolean isIdle() {
+		return System.nanoTime() - lastActivity >= TimeUnit.MINUTES.toNanos(config.getMaintenanceIdleMinutes());
+	}
+
+	/**
+	 * Let the disk settle after merging one index before starting on the next.
+	 *
+	 * @return true if still idle after the pause.
+	 */
+	private boolean pause(boolean merged) {
+		if (!merged) {
+			return true;
+		}
+		try {
+			Thread.sleep(config.getMaintenancePauseMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return isIdle();
+	}
+
+	private static void report(BiConsumer<Double, String> listener, double fraction, List<IndexStatistics> done, List<IndexStatistics> before) {
+		if (listener != null) {
+			listener.accept(fraction, summarize(done, before));
+		}
+	}
+
+	/**
+	 * Describe each index, as it is after merging if it has been done, otherwise as it was before.
+	 */
+	private static String summarize(List<IndexStatistics> done, List<IndexStatistics> before) {
+		StringBuilder summary = new StringBuilder();
+		for (int i = 0; i < before.size(); i++) {
+			if (i > 0) {
+				summary.append(String.format("%n"));
+			}
+			summary.append(i < done.size() ? done.get(i) : before.get(i));
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the progress of an index rebuild.
+ */
+public class IndexRebuildProgress {
+	private final Map<DocumentType, Long> totals;
+	private final Map<DocumentType, Long> indexed;
+	private final double documentsPerSecond;
+	private final boolean complete;
+
+	public IndexRebuildProgress(Map<DocumentType, Long> totals, Map<DocumentType, Long> indexed, double documentsPerSecond, boolean complete) {
+		this.totals = totals;
+		this.indexed = indexed;
+		this.documentsPerSecond = documentsPerSecond;
+		this.complete = complete;
+	}
+
+	/**
+	 * @return the number of entities to index for each document type, as far as they are known yet.
+	 */
+	public Map<DocumentType, Long> getTotals() {
+		return totals;
+	}
+
+	/**
+	 * @return the number of documents indexed so far for each document type.
+	 */
+	public Map<DocumentType, Long> getIndexed() {
+		return indexed;
+	}
+
+	public double getDocumentsPerSecond() {
+		return documentsPerSecond;
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return the fraction of all documents indexed so far, between 0 and 1.
+	 */
+	public double getFraction() {
+		long total = totals.values().stream().mapToLong(Long::longValue).sum();
+		long done = indexed.values().stream().mapToLong(Long::longValue).sum();
+		return complete ? 1.0 : total == 0 ? 0.0 : Math.min(1.0, (double) done / total);
+	}
+
+	/**
+	 * @return the estimated number of seconds until the rebuild finishes, or -1 if there is no estimate yet.
+	 */
+	public long getSecondsRemaining() {
+		long total = totals.values().stream().mapToLong(Long::longValue).sum();
+		long done = indexed.values().stream().mapToLong(Long::longValue).sum();
+		if (complete) {
+			return 0;
+		} else if (documentsPerSecond <= 0.0) {
+			return -1;
+		}
+		return (long) Math.ceil(Math.max(0, total - done) / documentsPerSecond);
+	}
+
+	/**
+	 * @return a description of the progress, one line for each document type followed by the rate and estimate.
+	 */
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		for (Map.Entry<DocumentType, Long> entry : totals.entrySet()) {
+			summary.append(String.format("%s: %,d of %,d%n", entry.getKey().getPluralDisplayName(), indexed.getOrDefault(entry.getKey(), 0L),
+					entry.getValue()));
+		}
+		long remaining = getSecondsRemaining();
+		summary.append(String.format("%,.0f documents/s", documentsPerSecond));
+		if (remaining >= 0) {
+			summary.append(String.format(", %d:%02d left", remaining / 60, remaining % 60));
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+/**
+ * The size and shape of the index of one document type.
+ */
+public class IndexStatistics {
+	private final DocumentType documentType;
+	private final long sizeBytes;
+	private final int segments;
+	private final int documents;
+	private final int deletedDocuments;
+
+	public IndexStatistics(DocumentType documentType, long sizeBytes, int segments, int documents, int deletedDocuments) {
+		this.documentType = documentType;
+		this.sizeBytes = sizeBytes;
+		this.segments = segments;
+		this.documents = documents;
+		this.deletedDocuments = deletedDocuments;
+	}
+
+	public DocumentType getDocumentType() {
+		return documentType;
+	}
+
+	/**
+	 * @return the size of the index files in bytes.
+	 */
+	public long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return the number of live documents.
+	 */
+	public int getDocuments() {
+		return documents;
+	}
+
+	/**
+	 * @return the number of documents deleted or replaced, which take up space until their segments are merged.
+	 */
+	public int getDeletedDocuments() {
+		return deletedDocuments;
+	}
+
+	/**
+	 * @return the fraction of the documents in the index that are deleted, between 0 and 1.
+	 */
+	public double getDeletedRatio() {
+		int total = documents + deletedDocuments;
+		return total == 0 ? 0.0 : (double) deletedDocuments / total;
+	}
+
+	public String toString() {
+		return String.format("%s: %,d documents, %d segments, %.0f%% deleted, %,d KB", documentType.getPluralDisplayName(), documents, segments,
+				getDeletedRatio() * 100, (sizeBytes + 1023) / 1024);
+	}
+}
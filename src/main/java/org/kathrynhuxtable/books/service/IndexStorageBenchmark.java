@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.Borrower;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Measures query latency on the current indexes with each way of storing them: memory mapped, read with NIO, read with
+ * plain file I/O, and copied onto the heap. The results are logged, to help choose
+ * {@code hibernate.search.default.filesystem_access_type} or an in-memory directory provider.
+ * <p>
+ * Runs in the background after startup when {@code mcdb.indexer.benchmark} is set. The indexes are opened read-only
+ * beside the ones Hibernate Search is using.
+ */
+@Service
+public class IndexStorageBenchmark {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IndexStorageBenchmark.class);
+
+	private static final Class<?>[] INDEXED_CLASSES = { Author.class, Title.class, Volume.class, Borrower.class };
+	private static final String SAMPLE_FIELD = "objectName";
+	private static final int SAMPLE_TERMS = 20;
+	private static final int WARMUP = 50;
+	private static final int ITERATIONS = 200;
+
+	private interface DirectoryOpener {
+		Directory open(Path path) throws IOException;
+	}
+
+	@Autowired
+	private YAMLConfig config;
+	@PersistenceUnit
+	private EntityManagerFactory emf;
+
+	@PostConstruct
+	public void startBenchmark() {
+		if (!config.isIndexerBenchmark()) {
+			return;
+		}
+		Thread thread = new Thread(this::run, "index-benchmark");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Run the benchmark and log the results.
+	 */
+	public void run() {
+		Object indexBase = emf.getProperties().get("hibernate.search.default.indexBase");
+		if (indexBase == null) {
+			LOG.info("The indexes aren't stored in files, so there is nothing to benchmark");
+			return;
+		}
+
+		Map<String, DirectoryOpener> providers = new LinkedHashMap<>();
+		providers.put("mmap", MMapDirectory::new);
+		providers.put("nio", NIOFSDirectory::new);
+		providers.put("simple", SimpleFSDirectory::new);
+		providers.put("ram", path -> {
+			try (FSDirectory directory = FSDirectory.open(path)) {
+				return new RAMDirectory(directory, IOContext.READ);
+			}
+		});
+
+		try {
+			for (Class<?> clazz : INDEXED_CLASSES) {
+				Path path = Paths.get(indexBase.toString(), clazz.getName());
+				if (!Files.isDirectory(path)) {
+					continue;
+				}
+				List<Query> queries = sampleQueries(path);
+				if (queries.isEmpty()) {
+					continue;
+				}
+
+				// The first run also warms up the JIT compiler, which would favour the later providers, so it is discarded.
+				time(FSDirectory.open(path), queries);
+
+				StringBuilder report = new StringBuilder();
+				for (Map.Entry<String, DirectoryOpener> provider : providers.entrySet()) {
+					report.append(String.format(", %s %,d us", provider.getKey(), time(provider.getValue().open(path), queries)));
+				}
+				LOG.info(String.format("Query latency on the %s index (%,d bytes, %d queries)%s", clazz.getSimpleName(), getSize(path), queries.size(),
+						report));
+			}
+		} catch (IOException e) {
+			LOG.warn("Index storage benchmark failed", e);
+		}
+	}
+
+	/**
+	 * Make term and prefix queries from terms spread through the index.
+	 */
+	private List<Query> sampleQueries(Path path) throws IOException {
+		List<Query> queries = new ArrayList<>();
+		try (Directory directory = FSDirectory.open(path); DirectoryReader reader = DirectoryReader.open(directory)) {
+			Terms terms = MultiFields.getTerms(reader, SAMPLE_FIELD);
+			if (terms == null) {
+				return queries;
+			}
+			long count = terms.size();
+			long step = count > SAMPLE_TERMS ? count / SAMPLE_TERMS : 1;
+			TermsEnum termsEnum = terms.iterator();
+			long index = 0;
+			for (BytesRef term = termsEnum.next(); term != null && queries.size() < SAMPLE_TERMS * 2; term = termsEnum.next(), index++) {
+				if (index % step == 0) {
+					String text = term.utf8ToString();
+					queries.add(new TermQuery(new Term(SAMPLE_FIELD, text)));
+					queries.add(new PrefixQuery(new Term(SAMPLE_FIELD, text.substring(0, Math.min(2, text.length())))));
+				}
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * @return the average time of a query in microseconds.
+	 */
+	private long time(Directory directory, List<Query> queries) throws IOException {
+		try (Directory open = directory; DirectoryReader reader = DirectoryReader.open(open)) {
+			IndexSearcher searcher = new IndexSearcher(reader);
+			for (int i = 0; i < WARMUP; i++) {
+				for (Query query : queries) {
+					searcher.search(query, 25);
+				}
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				for (Query query : queries) {
+					searcher.search(query, 25);
+				}
+			}
+			return (System.nanoTime() - start) / 1000 / ITERATIONS / queries.size();
+		}
+	}
+
+	private static long getSize(Path path) throws IOException {
+		long size = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+			for (Path file : files) {
+				size += Files.size(file);
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.dao.SearchDAO;
+import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.Borrower;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Type-ahead suggestions of author names, titles and borrower names, held in memory so that a lookup needs neither
+ * the index nor the database.
+ * <p>
+ * Each name is folded to lower case letters and digits, and stored under the part of it starting at each word, so a
+ * query matches the start of any word of a name. Names that the query matches from their first word come first, then
+ * the rest, each in alphabetical order. A lookup is a range scan of a sorted map, which takes microseconds.
+ * <p>
+ * Lookups don't lock. Updates change the map in place, and a rebuild replaces it as a whole.
+ */
+@Component
+public class NameSuggester {
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	// Key prefixes, which sort names that match from their first word before the others.
+	private static final char FIRST_WORD = '0';
+	private static final char LATER_WORD = '1';
+	// Separates the folded name from the document key, and sorts before any letter or digit.
+	private static final char KEY_SEPARATOR = '\0';
+
+	private static final DocumentType[] SUGGESTED_TYPES = { DocumentType.AUTHOR, DocumentType.TITLE, DocumentType.BORROWER };
+
+	private final int maxSuggestions;
+
+	@Autowired
+	private SearchDAO searchDao;
+
+	/** The suggestions keyed by folded name from each word start. */
+	private volatile NavigableMap<String, SearchResult> suggestions = new ConcurrentSkipListMap<>();
+	/** The keys of each document, so that they can be removed when it changes. */
+	private final Map<String, List<String>> documentKeys = new HashMap<>();
+
+	@Autowired
+	public NameSuggester(YAMLConfig config) {
+		this(config.getSearchSuggestions());
+	}
+
+	NameSuggester(int maxSuggestions) {
+		this.maxSuggestions = maxSuggestions;
+	}
+
+	/**
+	 * Fold a name or query for matching: lower case, with each run of spaces and punctuation made a single space.
+	 *
+	 * @param text
+	 *            the name or query.
+	 * @return the folded text.
+	 */
+	static String fold(String text) {
+		return SEPARATORS.matcher(text.toLowerCase()).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Get the suggestions for a query.
+	 *
+	 * @param query
+	 *            the text typed so far.
+	 * @return up to the configured number of suggestions, best first.
+	 */
+	public List<SearchResult> suggest(String query) {
+		List<SearchResult> results = new ArrayList<>();
+		String folded = fold(query);
+		if (folded.isEmpty() || maxSuggestions <= 0) {
+			return results;
+		}
+
+		NavigableMap<String, SearchResult> current = suggestions;
+		Map<String, SearchResult> found = new LinkedHashMap<>();
+		for (char rank : new char[] { FIRST_WORD, LATER_WORD }) {
+			String from = rank + folded;
+			for (SearchResult result : current.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+				found.putIfAbsent(documentKey(result), result);
+				if (found.size() >= maxSuggestions) {
+					return new ArrayList<>(found.values());
+				}
+			}
+		}
+		results.addAll(found.values());
+		return results;
+	}
+
+	/**
+	 * Rebuild the suggestions from the names stored in the indexes.
+	 */
+	public void rebuild() {
+		if (maxSuggestions <= 0) {
+			return;
+		}
+		List<SearchResult> results = new ArrayList<>();
+		for (DocumentType documentType : SUGGESTED_TYPES) {
+			results.addAll(searchDao.allResults(documentType));
+		}
+		rebuild(results);
+	}
+
+	/**
+	 * Replace all the suggestions.
+	 *
+	 * @param results
+	 *            the documents to suggest.
+	 */
+	public synchronized void rebuild(Collection<SearchResult> results) {
+		NavigableMap<String, SearchResult> rebuilt = new ConcurrentSkipListMap<>();
+		documentKeys.clear();
+		for (SearchResult result : results) {
+			add(rebuilt, result);
+		}
+		suggestions = rebuilt;
+	}
+
+	/**
+	 * Add or replace the suggestion for a document.
+	 *
+	 * @param result
+	 *            the document to suggest.
+	 */
+	public synchronized void update(SearchResult result) {
+		remove(suggestions, result.getDocumentType(), result.getId());
+		add(suggestions, result);
+	}
+
+	/**
+	 * Add or replace the suggestion for a saved entity.
+	 *
+	 * @param object
+	 *            the saved entity.
+	 * @see #suggestionsFor(DomainObject)
+	 */
+	public void update(DomainObject object) {
+		suggestionsFor(object).forEach(this::update);
+	}
+
+	/**
+	 * Get the suggestions that change when an entity is saved, without applying them. Saving a title also changes the
+	 * number of titles shown for its authors. Volumes aren't suggested, since their titles are.
+	 * <p>
+	 * The descriptions read the entity's collections, so this must be called while they can still be loaded.
+	 *
+	 * @param object
+	 *            the saved entity.
+	 * @return the suggestions to pass to {@link #update(SearchResult)}.
+	 */
+	public List<SearchResult> suggestionsFor(DomainObject object) {
+		List<SearchResult> results = new ArrayList<>();
+		if (maxSuggestions <= 0) {
+			return results;
+		}
+		if (object instanceof Author) {
+			Author author = (Author) object;
+			results.add(new SearchResult(DocumentType.AUTHOR, author.getName(), author.getId(), author.getShortDescription()));
+		} else if (object instanceof Title) {
+			Title title = (Title) object;
+			results.add(new SearchResult(DocumentType.TITLE, title.getTitle(), title.getId(), title.getShortDescription()));
+			title.getAuthors().forEach(author -> results.addAll(suggestionsFor(author)));
+		} else if (object instanceof Borrower) {
+			Borrower borrower = (Borrower) object;
+			results.add(new SearchResult(DocumentType.BORROWER, borrower.getName(), borrower.getId(), borrower.getDetails()));
+		}
+		return results;
+	}
+
+	/**
+	 * Remove the suggestion for a document.
+	 *
+	 * @param documentType
+	 *            the document type.
+	 * @param id
+	 *            the document id.
+	 */
+	public synchronized void remove(DocumentType documentType, Long id) {
+		remove(suggestions, documentType, id);
+	}
+
+	private void add(NavigableMap<String, SearchResult> map, SearchResult result) {
+		if (result.getName() == null) {
+			return;
+		}
+		String folded = fold(result.getName());
+		if (folded.isEmpty()) {
+			return;
+		}
+
+		String documentKey = documentKey(result);
+		List<String> keys = new ArrayList<>();
+		int start = 0;
+		while (start >= 0) {
+			String key = (start == 0 ? FIRST_WORD : LATER_WORD) + folded.substring(start) + KEY_SEPARATOR + documentKey;
+			map.put(key, result);
+			keys.add(key);
+
+			int space = folded.indexOf(' ', start);
+			start = space < 0 ? -1 : space + 1;
+		}
+		documentKeys.put(documentKey, keys);
+	}
+
+	private void remove(NavigableMap<String, SearchResult> map, DocumentType documentType, Long id) {
+		List<String> keys = documentKeys.remove(documentKey(documentType, id));
+		if (keys != null) {
+			keys.forEach(map::remove);
+		}
+	}
+
+	private static String documentKey(SearchResult result) {
+		return documentKey(result.getDocumentType(), result.getId());
+	}
+
+	private static String documentKey(DocumentType documentType, Long id) {
+		return documentType.name() + ":" + id;
+	}
+}
@@ -20,12 +20,18 @@ public class SearchResult {
 	private final String name;
 	private final Long id;
 	private final String shortDescription;
+	private final String searchText;
 
 	public SearchResult(final DocumentType documentType, final String name, final Long id, String shortDescription) {
+		this(documentType, name, id, shortDescription, null);
+	}
+
+	public SearchResult(final DocumentType documentType, final String name, final Long id, String shortDescription, String searchText) {
 		this.documentType = documentType;
 		this.name = name;
 		this.id = id;
 		this.shortDescription = shortDescription;
+		this.searchText = searchText;
 	}
 
 	public DocumentType getDocumentType() {
@@ -43,4 +49,11 @@ public class SearchResult {
 	public String getShortDescription() {
 		return shortDescription;
 	}
+
+	/**
+	 * @return the text of the searched fields, or null if the result was not built from the index.
+	 */
+	public String getSearchText() {
+		return searchText;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * LRU cache of the first page of global search results, keyed by normalized query.
+ * <p>
+ * While the user types, each query usually extends the one before it. If a cached shorter query returned all of its
+ * hits on one page, the hits of the longer query are a subset of them, and are found by matching the stored search
+ * text of each cached hit against the new query instead of searching the index again.
+ * <p>
+ * Only queries that the search runs as a simple query string are cached. The cache must be cleared whenever indexed
+ * entities change, and is turned off when the index changes are applied asynchronously.
+ */
+@Component
+public class SearchResultCache {
+	private static final Pattern SIMPLE_QUERY = Pattern.compile("[a-zA-Z0-9 ']*");
+	private static final Pattern PREFIX_TERM = Pattern.compile("[a-z0-9]+");
+
+	// The same analyzer that Hibernate Search uses by default for the indexed fields.
+	private static final Analyzer ANALYZER = new StandardAnalyzer();
+
+	private final int maxEntries;
+	private final boolean refine;
+	private final Map<String, SearchResultPage> entries;
+	private long generation = 0;
+
+	@Autowired
+	public SearchResultCache(YAMLConfig config) {
+		// Refining relies on the search matching every word but the last exactly, which isn't so in n-gram mode. With
+		// index changes applied in the background, a search between a save and its index change would cache stale
+		// results, so nothing is cached.
+		this("async".equalsIgnoreCase(config.getIndexerWorkerExecution()) ? 0 : config.getSearchCacheSize(),
+				!config.isSearchNgram());
+	}
+
+	SearchResultCache(int maxEntries, boolean refine) {
+		this.maxEntries = maxEntries;
+		this.refine = refine;
+		this.entries = new LinkedHashMap<String, SearchResultPage>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SearchResultPage> eldest) {
+				return size() > SearchResultCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Normalize a query. Simple queries are trimmed, lower-cased and have runs of spaces collapsed, which doesn't change
+	 * what they match. Other queries are returned unchanged.
+	 *
+	 * @param query
+	 *            the query.
+	 * @return the normalized query.
+	 */
+	public static String normalize(String query) {
+		if (!isSimple(query)) {
+			return query;
+		}
+		return query.trim().replaceAll(" +", " ").toLowerCase();
+	}
+
+	/**
+	 * Get the first page of results for a query, either as cached or refined from a cached shorter query.
+	 *
+	 * @param query
+	 *            the normalized query.
+	 * @param limit
+	 *            the page size.
+	 * @return the page of results, or null if the query must be searched.
+	 */
+	public synchronized SearchResultPage get(String query, int limit) {
+		if (maxEntries <= 0 || !isSimple(query) || query.isEmpty()) {
+			return null;
+		}
+
+		SearchResultPage page = entries.get(query);
+		if (page != null) {
+			return page.getLimit() == limit ? page : null;
+		}
+
+		if (!refine) {
+			return null;
+		}
+
+		// Try the longest cached prefix first, since it has the fewest hits to filter.
+		for (int length = query.length() - 1; length > 0; length--) {
+			SearchResultPage prefixPage = entries.get(query.substring(0, length));
+			if (prefixPage != null && prefixPage.getLimit() == limit && !prefixPage.hasMore()) {
+				page = refine(query, prefixPage);
+				if (page != null) {
+					entries.put(query, page);
+				}
+				return page;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the current generation of the cache, which changes each time it is cleared. Take it before searching, and
+	 * pass it to {@link #put(SearchResultPage, long)} with the results.
+	 *
+	 * @return the generation.
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Cache the first page of results for a query. The results are dropped if the cache has been cleared since the
+	 * search started, since they may be out of date.
+	 *
+	 * @param page
+	 *            the page of results.
+	 * @param searchGeneration
+	 *            the generation of the cache when the search started.
+	 */
+	public synchronized void put(SearchResultPage page, long searchGeneration) {
+		if (maxEntries > 0 && searchGeneration == generation && page.getOffset() == 0 && isSimple(page.getQuery())) {
+			entries.put(page.getQuery(), page);
+		}
+	}
+
+	/**
+	 * Drop all cached results.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		generation++;
+	}
+
+	private static boolean isSimple(String query) {
+		return query != null && SIMPLE_QUERY.matcher(query).matches();
+	}
+
+	/**
+	 * Filter the hits of a complete page for a shorter query by a longer query.
+	 * <p>
+	 * The search matches each word of the query exactly, except the last which is matched as a prefix. A hit matches if
+	 * every word is found in one of its searched fields. Returns null if the query has a word that can't be checked this
+	 * way, such as a stop word which the index would ignore, or if a hit has no stored search text.
+	 */
+	private SearchResultPage refine(String query, SearchResultPage prefixPage) {
+		List<String> words = Arrays.asList(query.split(" "));
+		List<String> exactTerms = words.subList(0, words.size() - 1);
+		String prefixTerm = words.get(words.size() - 1);
+
+		if (!PREFIX_TERM.matcher(prefixTerm).matches()) {
+			return null;
+		}
+		for (String term : exactTerms) {
+			if (!analyze(term).equals(Arrays.asList(term))) {
+				return null;
+			}
+		}
+
+		Map<DocumentType, List<SearchResult>> results = new TreeMap<>();
+		for (Map.Entry<DocumentType, List<SearchResult>> entry : prefixPage.getResults().entrySet()) {
+			List<SearchResult> matches = new ArrayList<>();
+			for (SearchResult result : entry.getValue()) {
+				if (result.getSearchText() == null) {
+					return null;
+				}
+				List<String> tokens = analyze(result.getSearchText());
+				if (tokens.containsAll(exactTerms) && tokens.stream().anyMatch(token -> token.startsWith(prefixTerm))) {
+					matches.add(result);
+				}
+			}
+			if (!matches.isEmpty()) {
+				results.put(entry.getKey(), matches);
+			}
+		}
+		return new SearchResultPage(query, results, 0, prefixPage.getLimit(), false);
+	}
+
+	private static List<String> analyze(String text) {
+		List<String> tokens = new ArrayList<>();
+		try (TokenStream stream = ANALYZER.tokenStream("searchText", text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				tokens.add(term.toString());
+			}
+			stream.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return tokens;
+	}
+}
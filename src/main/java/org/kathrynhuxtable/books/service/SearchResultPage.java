@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of global search results. For a unified search the page holds at most {@code limit} hits of all types,
+ * starting at {@code offset}. Otherwise each document type contributes at most {@code limit} results, starting at
+ * {@code offset} within that type's hits.
+ */
+public class SearchResultPage {
+	private final String query;
+	private final Map<DocumentType, List<SearchResult>> results;
+	private final int offset;
+	private final int limit;
+	private final boolean more;
+
+	public SearchResultPage(String query, Map<DocumentType, List<SearchResult>> results, int offset, int limit, boolean more) {
+		this.query = query;
+		this.results = results;
+		this.offset = offset;
+		this.limit = limit;
+		this.more = more;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public Map<DocumentType, List<SearchResult>> getResults() {
+		return results;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return true if at least one document type has hits beyond this page.
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	public int getNextOffset() {
+		return offset + limit;
+	}
+}
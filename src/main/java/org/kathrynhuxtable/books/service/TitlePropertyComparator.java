@@ -72,7 +72,6 @@ public class TitlePropertyComparator<T> implements Comparator<T> {
 		return sortDefinition;
 	}
 
-	@SuppressWarnings("unchecked")
 	public int compare(T o1, T o2) {
 		Object v1 = getPropertyValue(o1);
 		Object v2 = getPropertyValue(o2);
@@ -87,6 +86,11 @@ public class TitlePropertyComparator<T> implements Comparator<T> {
 			v2 = ((String) v2).toLowerCase();
 		}
 
+		return compareValues(o1, o2, v1, v2);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected int compareValues(T o1, T o2, Object v1, Object v2) {
 		int result;
 
 		// Put an object with null property at the end of the sort result.
@@ -106,11 +110,24 @@ public class TitlePropertyComparator<T> implements Comparator<T> {
 		return (this.sortDefinition.isAscending() ? result : -result);
 	}
 
+	/**
+	 * Get the key that titles are sorted on: the title in lower case, with punctuation removed and a leading article
+	 * moved to the end, so "The Hobbit" sorts as "hobbit, the". The search index stores this key for its sorted title
+	 * field.
+	 *
+	 * @param title
+	 *            the title, which may be null.
+	 * @return the sort key, or null if the title is null.
+	 */
+	public static String sortKey(String title) {
+		return title == null ? null : fixTitle(title).toLowerCase();
+	}
+
 	/**
 	 * @param v
 	 * @return
 	 */
-	private String fixTitle(String s) {
+	private static String fixTitle(String s) {
 		s = s.replaceAll("\\W+", " ").trim();
 		if (s.toLowerCase().startsWith("a ")) {
 			s = s.substring(2) + ", " + s.substring(0, 1);
@@ -142,16 +159,33 @@ public class TitlePropertyComparator<T> implements Comparator<T> {
 		}
 	}
 
+	// The title and volume comparators are used for sorted collections, so they read the title directly rather than
+	// through a BeanWrapper.
+
 	public static class TitleComparator extends TitlePropertyComparator<Title> {
 		public TitleComparator() {
 			super(new MutableSortDefinition("title", true, true));
 		}
+
+		@Override
+		public int compare(Title o1, Title o2) {
+			return compareValues(o1, o2, sortKey(o1.getTitle()), sortKey(o2.getTitle()));
+		}
 	}
 
 	public static class VolumeComparator extends TitlePropertyComparator<Volume> {
 		public VolumeComparator() {
 			super(new MutableSortDefinition("entry.title", true, true));
 		}
+
+		@Override
+		public int compare(Volume o1, Volume o2) {
+			return compareValues(o1, o2, sortKey(getTitle(o1)), sortKey(getTitle(o2)));
+		}
+
+		private static String getTitle(Volume volume) {
+			return volume.getEntry() == null ? null : volume.getEntry().getTitle();
+		}
 	}
 
 	public static class VolumeIdComparator extends TitlePropertyComparator<Volume> {
@@ -316,6 +316,20 @@ public class Popover extends Region implements EventHandler<Event>{
         }
     }
 
+    /**
+     * Refresh the button text of the current page, for pages whose buttons change while they are shown.
+     */
+    public final void updateButtons() {
+        if (pages.isEmpty()) {
+            return;
+        }
+        Page page = pages.getFirst();
+        leftButton.setVisible(page.leftButtonText() != null);
+        leftButton.setText(page.leftButtonText());
+        rightButton.setVisible(page.rightButtonText() != null);
+        rightButton.setText(page.rightButtonText());
+    }
+
     public final void pushPage(final Page page) {
         final Node pageNode = page.getPageNode();
         pageNode.setManaged(false);
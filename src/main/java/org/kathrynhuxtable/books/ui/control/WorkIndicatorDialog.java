@@ -6,6 +6,7 @@ package org.kathrynhuxtable.books.ui.control;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -41,8 +42,10 @@ public class WorkIndicatorDialog<P, R> {
 	private final ProgressIndicator progressIndicator = new ProgressIndicator(ProgressIndicator.INDETERMINATE_PROGRESS);
 	private final Stage dialog = new Stage(StageStyle.UNDECORATED);
 	private final Label label = new Label();
+	private final Label progressLabel = new Label();
 	private final Group root = new Group();
-	private final Scene scene = new Scene(root, 330, 120, Color.WHITE);
+	// Sized by its content, which is at least 330x120, so that it can grow to fit a progress message.
+	private final Scene scene = new Scene(root, Color.WHITE);
 	private final BorderPane mainPane = new BorderPane();
 	private final VBox vbox = new VBox();
 
@@ -88,7 +91,7 @@ public class WorkIndicatorDialog<P, R> {
 		vbox.setSpacing(5);
 		vbox.setAlignment(Pos.CENTER);
 		vbox.setMinSize(330, 120);
-		vbox.getChildren().addAll(label, progressIndicator);
+		vbox.getChildren().addAll(label, progressIndicator, progressLabel);
 		mainPane.setTop(vbox);
 		dialog.setScene(scene);
 
@@ -158,6 +161,23 @@ public class WorkIndicatorDialog<P, R> {
 		new Thread(taskWorker).start();
 	}
 
+	/**
+	 * Show the progress of the task. May be called from any thread.
+	 *
+	 * @param progress
+	 *            the fraction of the work done, between 0 and 1, or a negative value for indeterminate progress.
+	 * @param message
+	 *            a description of the progress, shown below the indicator.
+	 */
+	public void updateProgress(double progress, String message) {
+		Platform.runLater(() -> {
+			progressIndicator.progressProperty().unbind();
+			progressIndicator.setProgress(progress);
+			progressLabel.setText(message);
+			dialog.sizeToScene();
+		});
+	}
+
 	/**
 	 * For those that like beans :)
 	 */
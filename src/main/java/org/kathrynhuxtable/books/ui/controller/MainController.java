@@ -108,9 +108,13 @@ public class MainController {
 	@FXML
 	private Button buttonDelete;
 
+	@FXML
+	private MenuItem updateIndexes;
 	@FXML
 	private MenuItem rebuildIndexes;
 	@FXML
+	private MenuItem optimizeIndexes;
+	@FXML
 	private MenuItem importData;
 	@FXML
 	private MenuItem exportData;
@@ -196,7 +200,9 @@ public class MainController {
 	private ToggleGroupValue<DocumentType> menuPageToggleGroup = new ToggleGroupValue<>();
 	private ToggleGroupValue<DocumentType> buttonPageToggleGroup = new ToggleGroupValue<>();
 
+	private WorkIndicatorDialog<Integer, Integer> updateIndexesDialog = null;
 	private WorkIndicatorDialog<Integer, Integer> rebuildIndexesDialog = null;
+	private WorkIndicatorDialog<Integer, Integer> optimizeIndexesDialog = null;
 	private WorkIndicatorDialog<File, List<DataLoaderResult>> importDataDialog = null;
 	private WorkIndicatorDialog<File, List<DataLoaderResult>> exportDataDialog = null;
 
@@ -212,7 +218,9 @@ public class MainController {
 		toolBar.titleTextProperty().bind(pageBrowserController.currentPageTitleProperty());
 
 		// Wire File Menu
+		updateIndexes.setOnAction(event -> updateLuceneIndexes());
 		rebuildIndexes.setOnAction(event -> rebuildLuceneIndexes());
+		optimizeIndexes.setOnAction(event -> optimizeLuceneIndexes());
 		importData.setOnAction(event -> loadDataFromFile());
 		exportData.setOnAction(event -> exportDataToFile());
 		if (BooksApplication.IS_MAC) {
@@ -349,6 +357,18 @@ public class MainController {
 		}
 	}
 
+	private void updateLuceneIndexes() {
+		Window window = buttonHome.getScene().getWindow();
+		updateIndexesDialog = new WorkIndicatorDialog<Integer, Integer>(window, "Updating Indexes...");
+
+		updateIndexesDialog.addTaskEndNotification(result -> {
+		});
+
+		updateIndexesDialog.exec(0, input -> {
+			return booksService.updateIndexes(progress -> updateIndexesDialog.updateProgress(progress.getFraction(), progress.getSummary()));
+		});
+	}
+
 	private void rebuildLuceneIndexes() {
 		Window window = buttonHome.getScene().getWindow();
 		rebuildIndexesDialog = new WorkIndicatorDialog<Integer, Integer>(window, "Rebuilding Indexes...");
@@ -357,7 +377,20 @@ public class MainController {
 		});
 
 		rebuildIndexesDialog.exec(0, input -> {
-			booksService.rebuildIndexes();
+			booksService.rebuildIndexes(progress -> rebuildIndexesDialog.updateProgress(progress.getFraction(), progress.getSummary()));
+			return 0;
+		});
+	}
+
+	private void optimizeLuceneIndexes() {
+		Window window = buttonHome.getScene().getWindow();
+		optimizeIndexesDialog = new WorkIndicatorDialog<Integer, Integer>(window, "Optimizing Indexes...");
+
+		optimizeIndexesDialog.addTaskEndNotification(result -> {
+		});
+
+		optimizeIndexesDialog.exec(0, input -> {
+			booksService.optimizeIndexes((fraction, summary) -> optimizeIndexesDialog.updateProgress(fraction, summary));
 			return 0;
 		});
 	}
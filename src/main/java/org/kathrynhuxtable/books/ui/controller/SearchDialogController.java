@@ -15,8 +15,7 @@
  */
 package org.kathrynhuxtable.books.ui.controller;
 
-import java.util.List;
-
+import org.kathrynhuxtable.books.YAMLConfig;
 import org.kathrynhuxtable.books.persistence.domain.Author;
 import org.kathrynhuxtable.books.persistence.domain.Borrower;
 import org.kathrynhuxtable.books.persistence.domain.DomainObject;
@@ -24,7 +23,9 @@ import org.kathrynhuxtable.books.persistence.domain.Title;
 import org.kathrynhuxtable.books.persistence.domain.Volume;
 import org.kathrynhuxtable.books.service.BooksService;
 import org.kathrynhuxtable.books.service.DocumentType;
+import org.kathrynhuxtable.books.ui.util.LatestTaskRunner;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 
 import javafx.application.Platform;
@@ -38,13 +39,29 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
 import javafx.scene.text.Text;
+import javafx.stage.WindowEvent;
 import javafx.util.Callback;
-
+import javafx.util.Duration;
+
+/**
+ * Controls the dialog for choosing an author, title, volume or borrower by name.
+ * <p>
+ * The list is loaded a slice at a time off the JavaFX application thread. Typing restarts the search after a short
+ * pause, dropping the results of any search still running, and the next slice is loaded when the list is scrolled
+ * near its end, so a long list never has to be loaded, or held, all at once.
+ */
 @Component
 public class SearchDialogController {
 
+	private static final Duration SEARCH_DELAY = Duration.millis(150);
+
+	// Load the next slice when a cell this close to the end of the list is shown.
+	private static final int LOAD_AHEAD = 10;
+
 	@Autowired
 	private BooksService booksService;
+	@Autowired
+	private YAMLConfig config;
 
 	@FXML
 	private TextField searchText;
@@ -55,6 +72,36 @@ public class SearchDialogController {
 	private DocumentType documentType;
 	private Callback<DomainObject, Void> callback;
 
+	private LatestTaskRunner<SliceRequest, Slice<? extends DomainObject>> searchRunner;
+	private LatestTaskRunner<SliceRequest, Slice<? extends DomainObject>> moreRunner;
+
+	/** The search text the list is for. */
+	private String currentText = "";
+	/** Whether there are more results after the last slice loaded. */
+	private boolean moreAvailable = false;
+	/** Whether the next slice is being loaded. */
+	private boolean loadingMore = false;
+
+	/**
+	 * A request for the slice after the given item, or the first slice if it is null.
+	 */
+	private static class SliceRequest {
+		private final DocumentType documentType;
+		private final String text;
+		private final DomainObject after;
+
+		SliceRequest(DocumentType documentType, String text, DomainObject after) {
+			this.documentType = documentType;
+			this.text = text;
+			this.after = after;
+		}
+
+		@Override
+		public String toString() {
+			return documentType + " \"" + text + "\"";
+		}
+	}
+
 	public void setDocumentType(DocumentType documentType) {
 		this.documentType = documentType;
 	}
@@ -65,7 +112,7 @@ public class SearchDialogController {
 
 	@FXML
 	public void submit() {
-		if (searchResults.getItems().size() == 1) {
+		if (searchResults.getItems().size() == 1 && !moreAvailable) {
 			searchText.getScene().getWindow().hide();
 			callback.call(searchResults.getItems().get(0));
 		} else {
@@ -83,9 +130,20 @@ public class SearchDialogController {
 	}
 
 	public void addListeners() {
+		if (searchRunner == null) {
+			searchRunner = new LatestTaskRunner<>(SEARCH_DELAY, this::findSlice, this::showSlice);
+			moreRunner = new LatestTaskRunner<>(Duration.ONE, this::findSlice, this::appendSlice);
+		}
+
 		Platform.runLater(() -> {
 			searchText.requestFocus();
 
+			// Drop the results of any search still running, since they are for this dialog's list.
+			searchText.getScene().getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> {
+				searchRunner.cancel();
+				moreRunner.cancel();
+			});
+
 			searchText.getScene().getWindow().addEventHandler(KeyEvent.KEY_RELEASED, (KeyEvent event) -> {
 				if (KeyCode.ESCAPE == event.getCode()) {
 					cancel();
@@ -104,47 +162,21 @@ public class SearchDialogController {
 			protected void updateItem(DomainObject item, boolean empty) {
 				super.updateItem(item, empty);
 				setText(item == null ? null : item.toString() + " (" + item.getShortDescription() + ")");
+				if (!empty && getIndex() >= getListView().getItems().size() - LOAD_AHEAD) {
+					loadMore();
+				}
 			}
 		});
 
 		ChangeListener<String> textListener = (ObservableValue<? extends String> observable, String oldValue, String newValue) -> {
-			switch (documentType) {
-			case AUTHOR:
-				List<Author> authors = booksService.findAuthorByName(newValue, false);
-				if (authors == null || authors.size() == 0) {
-					searchResults.getItems().clear();
-				} else {
-					searchResults.getItems().setAll(authors);
-				}
-				break;
-			case TITLE:
-				List<Title> titles = booksService.findTitleByName(newValue);
-				if (titles == null || titles.size() == 0) {
-					searchResults.getItems().clear();
-				} else {
-					searchResults.getItems().setAll(titles);
-				}
-				break;
-			case VOLUME:
-				List<Volume> volumes = booksService.findVolumeByName(newValue);
-				if (volumes == null || volumes.size() == 0) {
-					searchResults.getItems().clear();
-				} else {
-					searchResults.getItems().setAll(volumes);
-				}
-				break;
-			case BORROWER:
-				List<Borrower> borrowers = booksService.findCheckOutByName(newValue, false);
-				if (borrowers == null || borrowers.size() == 0) {
-					searchResults.getItems().clear();
-				} else {
-					searchResults.getItems().setAll(borrowers);
-				}
-				break;
-			}
+			moreRunner.cancel();
+			currentText = newValue;
+			moreAvailable = false;
+			loadingMore = false;
+			searchRunner.submit(new SliceRequest(documentType, newValue, null));
 		};
 		searchText.textProperty().addListener(textListener);
-		textListener.changed(null, "", "");
+		textListener.changed(null, "", searchText.getText());
 
 		searchResults.setOnMouseClicked(event -> {
 			if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2 && event.getTarget() instanceof Text) {
@@ -156,4 +188,44 @@ public class SearchDialogController {
 			}
 		});
 	}
+
+	/**
+	 * Load the slice after the last item in the list, unless it is already being loaded or there are no more.
+	 */
+	private void loadMore() {
+		if (moreAvailable && !loadingMore && !searchResults.getItems().isEmpty()) {
+			loadingMore = true;
+			moreRunner.submit(new SliceRequest(documentType, currentText,
+					searchResults.getItems().get(searchResults.getItems().size() - 1)));
+		}
+	}
+
+	// Runs on a background thread.
+	private Slice<? extends DomainObject> findSlice(SliceRequest request) {
+		int size = config.getSearchBrowsePageSize();
+		switch (request.documentType) {
+		case AUTHOR:
+			return booksService.findAuthorByName(request.text, (Author) request.after, size);
+		case TITLE:
+			return booksService.findTitleByName(request.text, (Title) request.after, size);
+		case VOLUME:
+			return booksService.findVolumeByName(request.text, (Volume) request.after, size);
+		case BORROWER:
+			return booksService.findCheckOutByName(request.text, (Borrower) request.after, size);
+		default:
+			throw new IllegalArgumentException("Unknown document type " + request.documentType);
+		}
+	}
+
+	private void showSlice(Slice<? extends DomainObject> slice) {
+		moreAvailable = slice.hasNext();
+		searchResults.getItems().setAll(slice.getContent());
+		searchResults.scrollTo(0);
+	}
+
+	private void appendSlice(Slice<? extends DomainObject> slice) {
+		loadingMore = false;
+		moreAvailable = slice.hasNext();
+		searchResults.getItems().addAll(slice.getContent());
+	}
 }
\ No newline at end of file
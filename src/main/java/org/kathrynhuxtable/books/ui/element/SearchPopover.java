@@ -31,16 +31,19 @@
  */
 package org.kathrynhuxtable.books.ui.element;
 
-import java.util.EnumMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.kathrynhuxtable.books.service.BooksService;
 import org.kathrynhuxtable.books.service.DocumentType;
 import org.kathrynhuxtable.books.service.SearchResult;
+import org.kathrynhuxtable.books.service.SearchResultPage;
 import org.kathrynhuxtable.books.ui.control.Popover;
 import org.kathrynhuxtable.books.ui.control.SearchBox;
 import org.kathrynhuxtable.books.ui.controller.PageBrowserController;
+import org.kathrynhuxtable.books.ui.util.LatestTaskRunner;
 
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
@@ -56,6 +59,8 @@ import javafx.util.Duration;
  * Implementation of popover to show search results
  */
 public class SearchPopover extends Popover {
+	private static final Duration SEARCH_DELAY = Duration.millis(150);
+
 	private SearchBox searchBox;
 	private PageBrowserController pageBrowser;
 
@@ -64,6 +69,13 @@ public class SearchPopover extends Popover {
 	private SearchResultPopoverList searchResultPopoverList;
 
 	private BooksService booksService;
+	private LatestTaskRunner<String, SearchResultPage> searchRunner;
+	private LatestTaskRunner<SearchResultPage, SearchResultPage> moreRunner;
+
+	/** The last page loaded for the current query, or null if there is none. */
+	private SearchResultPage currentPage = null;
+	/** The results of all pages loaded for the current query, by document type. */
+	private Map<DocumentType, List<SearchResult>> loadedResults = new TreeMap<>();
 
 	public SearchPopover() {
 		super();
@@ -84,6 +96,10 @@ public class SearchPopover extends Popover {
 	}
 
 	public void initData() {
+		searchRunner = new LatestTaskRunner<>(SEARCH_DELAY, booksService::searchAll, this::showResults);
+		moreRunner = new LatestTaskRunner<>(Duration.ONE,
+				page -> booksService.searchAll(page.getQuery(), page.getNextOffset(), page.getLimit()), this::appendResults);
+
 		pageBrowser.currentPageProperty().addListener((observable, oldValue, newValue) -> {
 			searchBox.disableProperty().bind(newValue.changedProperty());
 		});
@@ -122,12 +138,45 @@ public class SearchPopover extends Popover {
 	}
 
 	private void updateResults() {
+		moreRunner.cancel();
+		currentPage = null;
 		if (searchBox.getText() == null || searchBox.getText().isEmpty()) {
-			populateMenu(new EnumMap<DocumentType, List<SearchResult>>(DocumentType.class));
+			searchRunner.cancel();
+			loadedResults = new TreeMap<>();
+			populateMenu(false);
 			return;
 		}
+		showSuggestions(booksService.suggest(searchBox.getText()));
+		searchRunner.submit(searchBox.getText());
+	}
+
+	/**
+	 * Show the names suggested for the text typed so far, which are found at once, until the search results replace
+	 * them.
+	 */
+	private void showSuggestions(List<SearchResult> suggestions) {
+		if (suggestions.isEmpty()) {
+			return;
+		}
+		loadedResults = new TreeMap<>();
+		suggestions.forEach(suggestion -> loadedResults.computeIfAbsent(suggestion.getDocumentType(), k -> new ArrayList<>()).add(suggestion));
+		showError(null);
+		populateMenu(false);
+		show();
+	}
+
+	/**
+	 * Fetch the next page of results for the current query and add them to the list.
+	 */
+	public void loadMoreResults() {
+		if (currentPage != null && currentPage.hasMore()) {
+			moreRunner.submit(currentPage);
+		}
+	}
+
+	private void showResults(SearchResultPage page) {
+		Map<DocumentType, List<SearchResult>> results = page.getResults();
 		boolean haveResults = false;
-		Map<DocumentType, List<SearchResult>> results = booksService.searchAll(searchBox.getText());
 		// check if we have any results
 		for (List<SearchResult> categoryResults : results.values()) {
 			if (categoryResults.size() > 0) {
@@ -135,9 +184,12 @@ public class SearchPopover extends Popover {
 				break;
 			}
 		}
+		currentPage = page;
+		loadedResults = new TreeMap<>();
+		results.forEach((documentType, list) -> loadedResults.put(documentType, new ArrayList<>(list)));
 		if (haveResults) {
 			showError(null);
-			populateMenu(results);
+			populateMenu(page.hasMore());
 			show();
 		} else {
 			if (searchErrorTooltip == null || searchErrorTooltip.getText() == null)
@@ -169,14 +221,31 @@ public class SearchPopover extends Popover {
 		}
 	}
 
-	private void populateMenu(Map<DocumentType, List<SearchResult>> results) {
-		searchResultPopoverList.getItems().clear();
-		for (Map.Entry<DocumentType, List<SearchResult>> entry : results.entrySet()) {
-			searchResultPopoverList.getItems().addAll(entry.getValue());
+	private void appendResults(SearchResultPage page) {
+		// Ignore a late page for a query that has since been replaced.
+		if (currentPage == null || !currentPage.getQuery().equals(page.getQuery())) {
+			return;
 		}
+		currentPage = page;
+		page.getResults().forEach((documentType, list) -> loadedResults.computeIfAbsent(documentType, k -> new ArrayList<>()).addAll(list));
+		searchResultPopoverList.getItems().setAll(flattenResults());
+		searchResultPopoverList.setMoreResultsAvailable(page.hasMore());
+	}
+
+	private void populateMenu(boolean moreResultsAvailable) {
+		searchResultPopoverList.getItems().setAll(flattenResults());
+		searchResultPopoverList.setMoreResultsAvailable(moreResultsAvailable);
 		clearPages();
 		pushPage(searchResultPopoverList);
 	}
+
+	private List<SearchResult> flattenResults() {
+		List<SearchResult> items = new ArrayList<>();
+		for (List<SearchResult> list : loadedResults.values()) {
+			items.addAll(list);
+		}
+		return items;
+	}
 	
 	@Override
 	public void hide() {
@@ -69,6 +69,7 @@ public class SearchResultPopoverList extends PopoverTreeList<SearchResult> imple
 	private Rectangle leftLine = new Rectangle(0, 0, 1, 1);
 	private IconPane iconPane = new IconPane();
 	private final Pane backgroundRectangle = new Pane();
+	private boolean moreResultsAvailable = false;
 
 	public SearchResultPopoverList(PageBrowserController pageBrowser, SearchBox searchBox) {
 		this.pageBrowser = pageBrowser;
@@ -132,13 +133,29 @@ public class SearchResultPopoverList extends PopoverTreeList<SearchResult> imple
 	public void handleLeftButton() {
 	}
 
+	/**
+	 * Show or hide the "More" button used to fetch the next page of results.
+	 *
+	 * @param moreResultsAvailable
+	 *            {@code true} if the search has more results than are shown.
+	 */
+	public void setMoreResultsAvailable(boolean moreResultsAvailable) {
+		this.moreResultsAvailable = moreResultsAvailable;
+		if (popover != null) {
+			popover.updateButtons();
+		}
+	}
+
 	@Override
 	public String rightButtonText() {
-		return null;
+		return moreResultsAvailable ? "More" : null;
 	}
 
 	@Override
 	public void handleRightButton() {
+		if (popover != null) {
+			popover.loadMoreResults();
+		}
 	}
 
 	@Override
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.books.ui.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javafx.animation.PauseTransition;
+import javafx.concurrent.Task;
+import javafx.util.Duration;
+
+/**
+ * Runs a background query for the most recent input only.
+ * <p>
+ * Each call to {@link #submit(Object)} restarts a debounce timer. When the timer fires the query is run on a background
+ * thread, superseding any query already queued or running. Results are delivered on the JavaFX application thread, and
+ * only for the latest query; results of superseded queries are dropped.
+ * <p>
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @param <P>
+ *            the query parameter type.
+ * @param <R>
+ *            the query result type.
+ */
+public class LatestTaskRunner<P, R> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LatestTaskRunner.class);
+
+	private final PauseTransition debounce;
+	private final Function<P, R> query;
+	private final Consumer<R> resultConsumer;
+	private final ExecutorService executor;
+
+	private Task<R> currentTask = null;
+
+	/**
+	 * Create a runner.
+	 *
+	 * @param delay
+	 *            the quiet period to wait for after the last input before starting the query.
+	 * @param query
+	 *            the query to run off the JavaFX application thread.
+	 * @param resultConsumer
+	 *            receives the result of the latest query on the JavaFX application thread.
+	 */
+	public LatestTaskRunner(Duration delay, Function<P, R> query, Consumer<R> resultConsumer) {
+		this.debounce = new PauseTransition(delay);
+		this.query = query;
+		this.resultConsumer = resultConsumer;
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "latest-task-runner");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Schedule a query for the parameter, superseding any earlier query.
+	 *
+	 * @param parameter
+	 *            the query parameter.
+	 */
+	public void submit(P parameter) {
+		cancel();
+		debounce.setOnFinished(event -> start(parameter));
+		debounce.playFromStart();
+	}
+
+	/**
+	 * Cancel the pending query, if any, and make sure the result of any running query is dropped.
+	 */
+	public void cancel() {
+		debounce.stop();
+		if (currentTask != null) {
+			// Don't interrupt a running query. Neither Lucene nor Derby respond well to interrupts, so the
+			// query is left to finish and its result is ignored.
+			currentTask.cancel(false);
+			currentTask = null;
+		}
+	}
+
+	private void start(P parameter) {
+		Task<R> task = new Task<R>() {
+			@Override
+			protected R call() throws Exception {
+				return query.apply(parameter);
+			}
+		};
+
+		task.setOnSucceeded(event -> {
+			if (task == currentTask) {
+				currentTask = null;
+				resultConsumer.accept(task.getValue());
+			}
+		});
+		task.setOnFailed(event -> {
+			if (task == currentTask) {
+				currentTask = null;
+			}
+			LOG.error("Background query failed for \"" + parameter + "\"", task.getException());
+		});
+
+		currentTask = task;
+		executor.execute(task);
+	}
+}
@@ -0,0 +1,130 @@
+package org.kathrynhuxtable.books.persistence.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.kathrynhuxtable.books.service.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Compares prefix search by wildcard with prefix search on the edge n-gram fields. Not run by the build, since it takes
+ * a while; run it with {@code mvn test -Dtest=SearchPrefixBenchmark}.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ SearchDAO.class, YAMLConfig.class })
+// The entities are saved, so the APP schema must exist.
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:benchmark;INIT=CREATE SCHEMA IF NOT EXISTS APP",
+		"spring.datasource.driver-class-name=org.h2.Driver" })
+// The index is only updated when a transaction commits.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SearchPrefixBenchmark {
+	private static final Logger LOG = LoggerFactory.getLogger(SearchPrefixBenchmark.class);
+
+	private static final int TITLES = 5000;
+	private static final int AUTHORS = 1000;
+	private static final int WARMUP = 50;
+	private static final int ITERATIONS = 200;
+	private static final String[] QUERIES = { "a", "th", "mar", "stor", "wind", "kelan" };
+
+	@Autowired
+	private AuthorDAO authorDao;
+	@Autowired
+	private TitleDAO titleDao;
+	@Autowired
+	private VolumeDAO volumeDao;
+	@Autowired
+	private SearchDAO searchDao;
+	@Autowired
+	private YAMLConfig config;
+
+	@Test
+	public void comparePrefixModes() {
+		populate();
+
+		long wildcard = time(false);
+		long ngram = time(true);
+
+		LOG.info(String.format("Prefix search over %d titles: wildcard %d us/query, n-gram %d us/query", TITLES, wildcard, ngram));
+	}
+
+	private long time(boolean ngram) {
+		config.setSearchNgram(ngram);
+		for (int i = 0; i < WARMUP; i++) {
+			for (String query : QUERIES) {
+				searchDao.searchAllResults(query, 0, 25);
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			for (String query : QUERIES) {
+				List<SearchResult> results = searchDao.searchAllResults(query, 0, 25);
+				assertThat(results).isNotEmpty();
+			}
+		}
+		return (System.nanoTime() - start) / 1000 / ITERATIONS / QUERIES.length;
+	}
+
+	private void populate() {
+		Random random = new Random(42);
+
+		List<Author> authors = new ArrayList<>();
+		for (int i = 0; i < AUTHORS; i++) {
+			Author author = new Author();
+			author.setLastName(word(random));
+			author.setFirstName(word(random));
+			authors.add(author);
+		}
+		authorDao.saveAll(authors);
+
+		List<Title> titles = new ArrayList<>();
+		for (int i = 0; i < TITLES; i++) {
+			Title title = new Title();
+			title.setTitle(word(random) + " " + word(random) + " " + word(random));
+			title.setCategory(word(random));
+			titles.add(title);
+		}
+		List<Volume> volumes = new ArrayList<>();
+		for (Title title : titleDao.saveAll(titles)) {
+			Volume volume = new Volume();
+			volume.setEntry(title);
+			volume.setPublisher(word(random));
+			volumes.add(volume);
+		}
+		volumeDao.saveAll(volumes);
+
+		// Start from a clean index, since the database is new for each run.
+		searchDao.rebuildIndexes(null);
+	}
+
+	private static String word(Random random) {
+		String[] syllables = { "a", "ka", "mar", "th", "stor", "wind", "el", "mor", "ri", "an", "ven", "dor", "kel", "is" };
+		StringBuilder word = new StringBuilder();
+		int length = 2 + random.nextInt(3);
+		for (int i = 0; i < length; i++) {
+			word.append(syllables[random.nextInt(syllables.length)]);
+		}
+		return word.toString();
+	}
+}
@@ -0,0 +1,144 @@
+package org.kathrynhuxtable.books.persistence.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.domain.DomainObject;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.kathrynhuxtable.books.service.DerivedDataBackfill;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Checks that finding the titles and volumes containing some text by their trigrams finds the same ones, in the same
+ * order, as a plain case insensitive like on the titles.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ DerivedDataBackfill.class, YAMLConfig.class })
+// The entities are saved, so the APP schema must exist.
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:trigrams;INIT=CREATE SCHEMA IF NOT EXISTS APP",
+		"spring.datasource.driver-class-name=org.h2.Driver" })
+public class TitleTrigramTest {
+
+	private static final String[] TITLES = { "A", "Ox", "Box", "The Fox", "100% Pure", "100 Percent", "snake_case",
+			"snakeXcase", "Dune", "Dune Messiah" };
+
+	// Shorter than a trigram, with like wildcards, and ending where the titles end.
+	private static final String[] QUERIES = { "", "a", "A", "x", "o", "ox", "fox", "the fox", "e f", "%", "0%", "100%",
+			"_", "e_c", "ke_", "une", "ne", "e", "dune m", "DUNE MESSIAH", "siah", "messiahs", "zzz" };
+
+	@Autowired
+	private TitleDAO titleDao;
+	@Autowired
+	private VolumeDAO volumeDao;
+	@Autowired
+	private DerivedDataBackfill backfill;
+	@PersistenceContext
+	private EntityManager em;
+
+	@Before
+	public void saveTitles() {
+		for (String text : TITLES) {
+			Title title = new Title();
+			title.setTitle(text);
+			title = titleDao.save(title);
+
+			Volume volume = new Volume();
+			volume.setEntry(title);
+			volumeDao.save(volume);
+		}
+		em.flush();
+		em.clear();
+	}
+
+	@Test
+	public void testSameAsLike() {
+		assertSameAsLike();
+	}
+
+	@Test
+	public void testBackfilledTrigrams() {
+		em.createNativeQuery("delete from APP.ENTRY_TRIGRAMS").executeUpdate();
+		em.clear();
+		assertThat(titleDao.findByTitle("dune")).isEmpty();
+
+		backfill.fill();
+
+		assertSameAsLike();
+	}
+
+	@Test
+	public void testRename() {
+		Title dune = title("Dune");
+		dune.setTitle("Arrakis");
+		titleDao.save(dune);
+		em.flush();
+		em.clear();
+
+		assertThat(titleDao.findByTitle("dune")).extracting(Title::getTitle).containsExactly("Dune Messiah");
+		assertThat(titleDao.findByTitle("kis")).extracting(Title::getTitle).containsExactly("Arrakis");
+		assertSameAsLike();
+	}
+
+	@Test
+	public void testDelete() {
+		Title box = title("Box");
+		volumeDao.deleteAll(box.getVolumes());
+		titleDao.delete(box);
+		em.flush();
+		em.clear();
+
+		assertThat(em.createQuery("select g from TitleTrigram g where g.entryId = :id").setParameter("id", box.getId())
+				.getResultList()).isEmpty();
+		assertThat(titleDao.findByTitle("ox")).extracting(Title::getTitle).containsOnly("Ox", "The Fox");
+		assertSameAsLike();
+	}
+
+	private void assertSameAsLike() {
+		for (String query : QUERIES) {
+			List<Long> titles = em.createQuery("select t.id from Title t where lower(t.title) like :title escape '\\'"
+					+ " order by t.sortTitle, t.id", Long.class).setParameter("title", like(query)).getResultList();
+			List<Long> volumes = em.createQuery("select v.id from Volume v join v.entry t where lower(t.title) like :title escape '\\'"
+					+ " order by t.sortTitle, v.id", Long.class).setParameter("title", like(query)).getResultList();
+
+			assertThat(ids(titleDao.findByTitle(query))).as("titles containing '%s'", query).isEqualTo(titles);
+			assertThat(ids(titleDao.findByTitle(query, null, TITLES.length).getContent())).as("title slice containing '%s'", query)
+					.isEqualTo(titles);
+			assertThat(ids(volumeDao.findByTitle(query, false))).as("volumes containing '%s'", query).isEqualTo(volumes);
+			assertThat(ids(volumeDao.findByTitle(query, null, TITLES.length).getContent())).as("volume slice containing '%s'", query)
+					.isEqualTo(volumes);
+		}
+	}
+
+	// Made here rather than by Keysets, so that a mistake there shows up as a difference.
+	private static String like(String text) {
+		return "%" + text.toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
+
+	private Title title(String text) {
+		return em.createQuery("select t from Title t where t.title = :title", Title.class).setParameter("title", text)
+				.getSingleResult();
+	}
+
+	private static List<Long> ids(List<? extends DomainObject> objects) {
+		return objects.stream().map(DomainObject::getId).collect(Collectors.toList());
+	}
+}
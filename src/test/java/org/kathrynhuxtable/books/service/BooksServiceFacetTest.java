@@ -0,0 +1,137 @@
+package org.kathrynhuxtable.books.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.dao.SearchDAO;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Counts facets over a few titles and volumes saved through the service, some of them without a value for a facet.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ BooksService.class, SearchDAO.class, SearchResultCache.class, NameSuggester.class, IndexMaintenance.class,
+		YAMLConfig.class })
+// The entities are saved, so the APP schema must exist. The indexes are kept in memory, so that they hold only these.
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:facets;INIT=CREATE SCHEMA IF NOT EXISTS APP",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.jpa.properties.hibernate.search.default.directory_provider=local-heap" })
+// The index is only updated when a transaction commits.
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class BooksServiceFacetTest {
+
+	@Autowired
+	private BooksService booksService;
+
+	private static boolean saved = false;
+
+	@Before
+	public void saveCatalog() {
+		if (saved) {
+			return;
+		}
+		saved = true;
+		Title alpha = saveTitle("Alpha", "Fiction", "Novel");
+		saveTitle("Beta", "Fiction", null);
+		Title gamma = saveTitle("Gamma", null, "Novel");
+		Title delta = saveTitle("Delta", "History", "Essay");
+
+		saveVolume(alpha, "Hardcover", "Tor");
+		saveVolume(alpha, "Paperback", null);
+		saveVolume(gamma, null, "Tor");
+		saveVolume(delta, "Hardcover", null);
+	}
+
+	@Test
+	public void testTitleCountsAlone() {
+		FacetedResults results = booksService.searchFacets(DocumentType.TITLE, null, 0, 0);
+
+		assertThat(results.getResults()).isEmpty();
+		assertThat(results.getTotalHits()).isEqualTo(4);
+		assertThat(results.getCounts("category")).isEqualTo(counts("Fiction", 2, "History", 1));
+		assertThat(results.getCounts("form")).isEqualTo(counts("Novel", 2, "Essay", 1));
+		assertThat(results.getCounts("binding")).isEmpty();
+	}
+
+	@Test
+	public void testTitlePages() {
+		FacetedResults first = booksService.searchFacets(DocumentType.TITLE, "", 0, 3);
+		FacetedResults second = booksService.searchFacets(DocumentType.TITLE, "", 3, 3);
+
+		assertThat(first.getResults()).extracting(SearchResult::getName).containsExactly("Alpha", "Beta", "Delta");
+		assertThat(second.getResults()).extracting(SearchResult::getName).containsExactly("Gamma");
+		// The counts cover every hit, not just the page.
+		assertThat(first.getTotalHits()).isEqualTo(4);
+		assertThat(second.getTotalHits()).isEqualTo(4);
+		assertThat(first.getCounts("category")).isEqualTo(counts("Fiction", 2, "History", 1));
+		assertThat(second.getCounts("category")).isEqualTo(counts("Fiction", 2, "History", 1));
+	}
+
+	@Test
+	public void testTitleQuery() {
+		FacetedResults results = booksService.searchFacets(DocumentType.TITLE, "fiction", 0, 10);
+
+		assertThat(results.getResults()).extracting(SearchResult::getName).containsExactly("Alpha", "Beta");
+		assertThat(results.getTotalHits()).isEqualTo(2);
+		assertThat(results.getCounts("category")).isEqualTo(counts("Fiction", 2));
+		assertThat(results.getCounts("form")).isEqualTo(counts("Novel", 1));
+	}
+
+	@Test
+	public void testVolumeCounts() {
+		FacetedResults alone = booksService.searchFacets(DocumentType.VOLUME, null, 0, 0);
+		FacetedResults page = booksService.searchFacets(DocumentType.VOLUME, null, 0, 2);
+
+		assertThat(alone.getResults()).isEmpty();
+		assertThat(page.getResults()).hasSize(2);
+		for (FacetedResults results : new FacetedResults[] { alone, page }) {
+			assertThat(results.getTotalHits()).isEqualTo(4);
+			assertThat(results.getCounts("binding")).isEqualTo(counts("Hardcover", 2, "Paperback", 1));
+			assertThat(results.getCounts("publisher")).isEqualTo(counts("Tor", 2));
+		}
+	}
+
+	private Title saveTitle(String name, String category, String form) {
+		Title title = new Title();
+		title.setTitle(name);
+		title.setCategory(category);
+		title.setForm(form);
+		return booksService.save(title);
+	}
+
+	private void saveVolume(Title title, String binding, String publisher) {
+		Volume volume = new Volume();
+		volume.setEntry(title);
+		volume.setBinding(binding);
+		volume.setPublisher(publisher);
+		booksService.save(volume);
+	}
+
+	private static Map<String, Integer> counts(Object... valuesAndCounts) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < valuesAndCounts.length; i += 2) {
+			counts.put((String) valuesAndCounts[i], (Integer) valuesAndCounts[i + 1]);
+		}
+		return counts;
+	}
+}
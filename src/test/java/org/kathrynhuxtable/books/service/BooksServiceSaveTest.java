@@ -0,0 +1,74 @@
+package org.kathrynhuxtable.books.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kathrynhuxtable.books.YAMLConfig;
+import org.kathrynhuxtable.books.persistence.dao.SearchDAO;
+import org.kathrynhuxtable.books.persistence.domain.Author;
+import org.kathrynhuxtable.books.persistence.domain.Title;
+import org.kathrynhuxtable.books.persistence.domain.Volume;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Saves through the service the way the pages do, each save in its own transaction and with lazy loading outside a
+ * transaction turned off, so that anything the service reads after the save must already have been loaded.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ BooksService.class, SearchDAO.class, SearchResultCache.class, NameSuggester.class, IndexMaintenance.class,
+		YAMLConfig.class })
+// The entities are saved, so the APP schema must exist.
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:save;INIT=CREATE SCHEMA IF NOT EXISTS APP",
+		"spring.datasource.driver-class-name=org.h2.Driver" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BooksServiceSaveTest {
+
+	@Autowired
+	private BooksService booksService;
+
+	@Test
+	public void testSaveTitleWithAuthor() {
+		Author author = new Author();
+		author.setLastName("Bogus");
+		author.setFirstName("Joe");
+		author = booksService.save(author);
+
+		Title title = new Title();
+		title.setTitle("A Bogus Story");
+		title.getAuthors().add(author);
+		title = booksService.save(title);
+
+		assertThat(title.getAuthors()).hasSize(1);
+		assertThat(title.getAuthors().iterator().next().getShortDescription()).startsWith("1 Titles");
+		assertThat(booksService.suggest("bogus")).extracting(SearchResult::getShortDescription).contains("1 Titles");
+	}
+
+	@Test
+	public void testFindVolumeByName() {
+		Title title = new Title();
+		title.setTitle("The Found Volume");
+		title = booksService.save(title);
+
+		Volume volume = new Volume();
+		volume.setEntry(title);
+		booksService.save(volume);
+
+		List<Volume> volumes = booksService.findVolumeByName("found vol");
+		assertThat(volumes).hasSize(1);
+		assertThat(volumes.get(0).getEntry().getTitle()).isEqualTo("The Found Volume");
+		assertThat(volumes.get(0).toString()).contains("The Found Volume");
+	}
+}
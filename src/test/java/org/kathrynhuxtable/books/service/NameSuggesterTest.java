@@ -0,0 +1,52 @@
+package org.kathrynhuxtable.books.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class NameSuggesterTest {
+
+	private static final SearchResult TOLKIEN = new SearchResult(DocumentType.AUTHOR, "Tolkien, John", 1L, "2 Titles");
+	private static final SearchResult HOBBIT = new SearchResult(DocumentType.TITLE, "The Hobbit", 2L, "Fiction");
+	private static final SearchResult TOLD = new SearchResult(DocumentType.TITLE, "Twice-Told Tales", 3L, "Fiction");
+
+	@Test
+	public void testFold() {
+		assertThat(NameSuggester.fold("  Twice-Told  Tales, Vol. 1 ")).isEqualTo("twice told tales vol 1");
+	}
+
+	@Test
+	public void testFirstWordMatchesFirst() {
+		NameSuggester suggester = new NameSuggester(10);
+		suggester.rebuild(Arrays.asList(TOLKIEN, HOBBIT, TOLD));
+
+		assertThat(suggester.suggest("to")).containsExactly(TOLKIEN, TOLD);
+		assertThat(suggester.suggest("HOB")).containsExactly(HOBBIT);
+		assertThat(suggester.suggest("tolkien, j")).containsExactly(TOLKIEN);
+		assertThat(suggester.suggest("x")).isEmpty();
+	}
+
+	@Test
+	public void testLimit() {
+		NameSuggester suggester = new NameSuggester(1);
+		suggester.rebuild(Arrays.asList(TOLKIEN, HOBBIT, TOLD));
+
+		assertThat(suggester.suggest("t")).containsExactly(HOBBIT);
+	}
+
+	@Test
+	public void testUpdateAndRemove() {
+		NameSuggester suggester = new NameSuggester(10);
+		suggester.rebuild(Arrays.asList(TOLKIEN, HOBBIT));
+
+		SearchResult renamed = new SearchResult(DocumentType.TITLE, "There and Back Again", 2L, "Fiction");
+		suggester.update(renamed);
+		assertThat(suggester.suggest("hob")).isEmpty();
+		assertThat(suggester.suggest("back")).containsExactly(renamed);
+
+		suggester.remove(DocumentType.AUTHOR, 1L);
+		assertThat(suggester.suggest("tol")).isEmpty();
+	}
+}
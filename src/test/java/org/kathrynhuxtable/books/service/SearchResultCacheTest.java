@@ -0,0 +1,104 @@
+package org.kathrynhuxtable.books.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class SearchResultCacheTest {
+
+	private static final SearchResult TOLKIEN = new SearchResult(DocumentType.AUTHOR, "Tolkien, John", 1L, "2 Titles",
+			"Tolkien, John\nTolkien\nJohn\nEnglish");
+	private static final SearchResult TOLSTOY = new SearchResult(DocumentType.AUTHOR, "Tolstoy, Leo", 2L, "1 Titles", "Tolstoy, Leo\nTolstoy\nLeo");
+	private static final SearchResult HOBBIT = new SearchResult(DocumentType.TITLE, "The Hobbit", 3L, "Fiction",
+			"The Hobbit\nFiction\nfalse\nIllustrated by Tolkien");
+
+	@Test
+	public void testNormalize() {
+		assertThat(SearchResultCache.normalize("  Tolkien   John ")).isEqualTo("tolkien john");
+		assertThat(SearchResultCache.normalize("title:Hobbit")).isEqualTo("title:Hobbit");
+	}
+
+	@Test
+	public void testExactHit() {
+		SearchResultCache cache = new SearchResultCache(4, true);
+		SearchResultPage page = page("tol", true, TOLKIEN, TOLSTOY);
+		cache.put(page, cache.getGeneration());
+
+		assertThat(cache.get("tol", 25)).isSameAs(page);
+		assertThat(cache.get("tol", 10)).isNull();
+	}
+
+	@Test
+	public void testRefineCompletePrefix() {
+		SearchResultCache cache = new SearchResultCache(4, true);
+		cache.put(page("tol", false, TOLKIEN, TOLSTOY, HOBBIT), cache.getGeneration());
+
+		SearchResultPage refined = cache.get("tolk", 25);
+		assertThat(refined.hasMore()).isFalse();
+		assertThat(refined.getResults().get(DocumentType.AUTHOR)).containsExactly(TOLKIEN);
+		// Matched through the note, not the name.
+		assertThat(refined.getResults().get(DocumentType.TITLE)).containsExactly(HOBBIT);
+
+		SearchResultPage twoWords = cache.get("tolkien jo", 25);
+		assertThat(twoWords.getResults()).containsOnlyKeys(DocumentType.AUTHOR);
+		assertThat(twoWords.getResults().get(DocumentType.AUTHOR)).containsExactly(TOLKIEN);
+	}
+
+	@Test
+	public void testNoRefineIncompletePrefix() {
+		SearchResultCache cache = new SearchResultCache(4, true);
+		cache.put(page("tol", true, TOLKIEN, TOLSTOY), cache.getGeneration());
+
+		assertThat(cache.get("tolk", 25)).isNull();
+	}
+
+	@Test
+	public void testNoRefineStopWord() {
+		SearchResultCache cache = new SearchResultCache(4, true);
+		cache.put(page("the", false, HOBBIT), cache.getGeneration());
+
+		// The index ignores "the", so "the h" matches more than "the" did.
+		assertThat(cache.get("the h", 25)).isNull();
+	}
+
+	@Test
+	public void testEviction() {
+		SearchResultCache cache = new SearchResultCache(2, true);
+		cache.put(page("a", true, TOLKIEN), cache.getGeneration());
+		cache.put(page("b", true, TOLKIEN), cache.getGeneration());
+		cache.get("a", 25);
+		cache.put(page("c", true, TOLKIEN), cache.getGeneration());
+
+		assertThat(cache.get("a", 25)).isNotNull();
+		assertThat(cache.get("b", 25)).isNull();
+		assertThat(cache.get("c", 25)).isNotNull();
+	}
+
+	@Test
+	public void testClear() {
+		SearchResultCache cache = new SearchResultCache(4, true);
+		long generation = cache.getGeneration();
+		cache.put(page("tol", false, TOLKIEN), generation);
+		cache.clear();
+
+		assertThat(cache.get("tol", 25)).isNull();
+		assertThat(cache.get("tolk", 25)).isNull();
+
+		// Results of a search that started before the cache was cleared are not cached.
+		cache.put(page("tol", false, TOLKIEN), generation);
+		assertThat(cache.get("tol", 25)).isNull();
+	}
+
+	private static SearchResultPage page(String query, boolean more, SearchResult... hits) {
+		Map<DocumentType, List<SearchResult>> results = new TreeMap<>();
+		for (SearchResult hit : hits) {
+			results.computeIfAbsent(hit.getDocumentType(), k -> new ArrayList<>()).add(hit);
+		}
+		return new SearchResultPage(query, results, 0, 25, more);
+	}
+}